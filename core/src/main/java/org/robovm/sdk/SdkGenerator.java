@@ -2,16 +2,16 @@ package org.robovm.sdk;
 
 import com.dd.plist.NSDictionary;
 import com.dd.plist.PropertyListParser;
+import org.robovm.sdk.dyld.bytereader.impl.GzipBlockSource;
 import org.robovm.sdk.dyld.cache.DyLdCache;
-import org.robovm.sdk.dyld.cache.tapi.TapiTbdImageVo;
-import org.robovm.sdk.dyld.cache.tapi.TapiTbdYamlExporter;
+import org.robovm.sdk.dyld.cache.tapi.TapiTbdStreamExporter;
 import org.robovm.sdk.dyld.macho.MachOException;
 import org.zeroturnaround.zip.ZipUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
 import java.util.Arrays;
-import java.util.Map;
 
 public class SdkGenerator {
 
@@ -20,24 +20,58 @@ public class SdkGenerator {
     }
 
     public static void generateSdk(File cacheFile64b, File systemVersionPlist, File outputDir, ProgressListener listener ) throws MachOException, Exception {
-        // de-cache everything        listener.progressOut("Generating meta-files...", 1f);
-        DyLdCache cache = new DyLdCache(cacheFile64b);
-        Map<String, TapiTbdImageVo> images = cache.readImages((image, imageIdx, imageCnt) -> {
-            listener.progressOut("Reading: (" + imageIdx + "/" + imageCnt + ") " + image, 0.5f * imageIdx / imageCnt);
-        });
+        generateSdk(cacheFile64b, false, systemVersionPlist, outputDir, listener);
+    }
+
+    public static void generateSdk(File cacheFile64b, boolean memoryMapped, File systemVersionPlist, File outputDir, ProgressListener listener ) throws MachOException, Exception {
+        generateSdk(withPruning(new DyLdCache(cacheFile64b, memoryMapped)), systemVersionPlist, outputDir, listener);
+    }
+
+    /**
+     * generates SDK from remote cache, e.g. one exposed by device download server, without downloading it
+     */
+    public static void generateSdk(URL cacheUrl64b, File systemVersionPlist, File outputDir, ProgressListener listener ) throws MachOException, Exception {
+        generateSdk(withPruning(new DyLdCache(cacheUrl64b)), systemVersionPlist, outputDir, listener);
+    }
+
+    /**
+     * only public images are exported, cache created for SDK generation can skip private ones that are not
+     * reexported by these
+     */
+    private static DyLdCache withPruning(DyLdCache cache) {
+        cache.setReachabilityPruningEnabled(true);
+        return cache;
+    }
 
+    /**
+     * generates SDK from cache that was already opened and configured (e.g. with image parallelism or
+     * reachability pruning), its configuration is not changed
+     */
+    public static void generateSdk(DyLdCache cache, File systemVersionPlist, File outputDir, ProgressListener listener ) throws MachOException, Exception {
         // folder to put everything there
         File xcodeOutputDir = new File(outputDir,"Xcode.app");
         if (xcodeOutputDir.exists())
             deleteDirectory(xcodeOutputDir);
         forceMkdir(xcodeOutputDir);
 
-        // dump to files
+        // de-cache everything and dump to files, images are exported while rest of cache is being parsed
         File tblExportDir = new File(xcodeOutputDir, "Developer/Platforms/iPhoneOS.platform/Developer/SDKs/iPhoneOS.sdk");
         forceMkdir(tblExportDir);
-        TapiTbdYamlExporter.exportAll(tblExportDir, images, Arrays.asList("arm64", "armv7", "armv7s"), (image, imageIdx, imageCnt) -> {
-            listener.progressOut("Exporting: (" + imageIdx + "/" + imageCnt + ") " + image, 0.5f + 0.5f * imageIdx / imageCnt);
+        // reading and export run at same time, progress is average of both
+        StreamProgress progress = new StreamProgress();
+        TapiTbdStreamExporter exporter = new TapiTbdStreamExporter(tblExportDir, Arrays.asList("arm64", "armv7", "armv7s"),
+                (image, imageIdx, imageCnt) -> {
+            listener.progressOut("Exporting: (" + imageIdx + "/" + imageCnt + ") " + image, progress.exported(imageIdx, imageCnt));
         });
+        try {
+            cache.streamImages((image, imageIdx, imageCnt) -> {
+                listener.progressOut("Reading: (" + imageIdx + "/" + imageCnt + ") " + image, progress.read(imageIdx, imageCnt));
+            }, exporter);
+        } catch (Throwable e) {
+            exporter.abort();
+            throw e;
+        }
+        exporter.finish();
 
         // generate meta files
         listener.progressOut("Generating meta-files...", 1f);
@@ -51,6 +85,24 @@ public class SdkGenerator {
         listener.progressOut("done!", 1f);
     }
 
+    /**
+     * combines progress of reading and export that are reported from different threads
+     */
+    private static class StreamProgress {
+        private float read;
+        private float exported;
+
+        synchronized float read(int imageIdx, int imageCnt) {
+            read = (float) (imageIdx + 1) / imageCnt;
+            return (read + exported) / 2;
+        }
+
+        synchronized float exported(int imageIdx, int imageCnt) {
+            exported = (float) (imageIdx + 1) / imageCnt;
+            return (read + exported) / 2;
+        }
+    }
+
     private static void deleteDirectory(File dir) throws IOException {
         if (!dir.exists())
             return;
@@ -135,12 +187,29 @@ public class SdkGenerator {
         // Allows to generate SDK files if dyld_shared_cache_arm64 and SystemVersion.plist has been downloaded from iOS devices
 
         try {
+            if (argv.length == 3 && argv[0].equals("--pack")) {
+                // compress cache into seekable gzip that can be used as input instead of plain one
+                GzipBlockSource.pack(new File(argv[1]), new File(argv[2]), GzipBlockSource.DEFAULT_BLOCK_SIZE);
+                return;
+            }
+
             if (argv.length != 3) {
-                System.out.println("Usage: <path to 64bit dyld cach> <path to SystemVersion.plist> <output dir>");
+                System.out.println("Usage: <path or http url to 64bit dyld cach> <path to SystemVersion.plist> <output dir>");
+                System.out.println("       --pack <path to 64bit dyld cache> <path to compressed cache>");
                 System.exit(-1);
             }
 
-            generateSdk(new File(argv[0]), new File(argv[1]), new File(argv[2]), (msg, progress) -> System.out.println(msg));
+            DyLdCache cache;
+            if (argv[0].startsWith("http://") || argv[0].startsWith("https://")) {
+                // read cache directly from device download server
+                cache = new DyLdCache(new URL(argv[0]));
+            } else {
+                // on host there is enough address space to memory map whole cache
+                cache = new DyLdCache(new File(argv[0]), true);
+            }
+            // on host all cores can be used to read images
+            cache.setImageParallelism(Runtime.getRuntime().availableProcessors());
+            generateSdk(withPruning(cache), new File(argv[1]), new File(argv[2]), (msg, progress) -> System.out.println(msg));
         } catch (MachOException e) {
             e.printStackTrace();
         }
@@ -3,8 +3,17 @@ package org.robovm.sdk.dyld.bytereader;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class ByteReader {
     protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
@@ -40,12 +49,134 @@ public abstract class ByteReader {
     }
 
 
+    /**
+     * reads block of bytes and returns it as read only buffer that is ordered with byte order of reader.
+     * Buffer position and limit are set around data read.
+     * Default implementation copies data, readers that have data in memory (mapped/cached) shall override it and
+     * return view of their data without copying. Returned buffer shall remain valid after subsequent reads.
+     * @param size of block to read
+     * @return buffer with data
+     */
+    public ByteBuffer readBytes(int size) {
+        byte[] bytes = new byte[size];
+        get(bytes);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer().order(byteOrder);
+    }
+
+    /**
+     * reads fixed size structure and decodes it at constant offsets.
+     * Default implementation decodes from readBytes view, readers that keep data in own buffer shall override it
+     * and decode directly from that buffer, so no view is created for every single structure.
+     * @param structReader to decode structure with
+     * @param object to decode into or null if new one has to be created
+     * @return decoded object
+     */
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        ByteBuffer buffer = readBytes(structReader.objectSize());
+        return structReader.decode(buffer, buffer.position(), object);
+    }
+
+    /**
+     * bulk read of int32 values.
+     * Default implementation decodes from readBytes view, readers that keep data in own buffer shall override it
+     * and decode directly from that buffer
+     */
+    public void readInt32s(int[] dst, int offset, int count) {
+        readBytes(count * 4).asIntBuffer().get(dst, offset, count);
+    }
+
+    /**
+     * bulk read of int32 values, fills all remaining in destination buffer
+     */
+    public void readInt32s(IntBuffer dst) {
+        int count = dst.remaining();
+        if (dst.hasArray()) {
+            readInt32s(dst.array(), dst.arrayOffset() + dst.position(), count);
+            dst.position(dst.position() + count);
+        } else {
+            dst.put(readBytes(count * 4).asIntBuffer());
+        }
+    }
+
+    /**
+     * bulk read of uint32 values, these are expanded to long
+     */
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        IntBuffer src = readBytes(count * 4).asIntBuffer();
+        for (int idx = 0; idx < count; idx++)
+            dst[offset + idx] = src.get(idx) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * bulk read of int64 values
+     */
+    public void readLongs(long[] dst, int offset, int count) {
+        readBytes(count * 8).asLongBuffer().get(dst, offset, count);
+    }
+
+    /**
+     * bulk read of int64 values, fills all remaining in destination buffer
+     */
+    public void readLongs(LongBuffer dst) {
+        int count = dst.remaining();
+        if (dst.hasArray()) {
+            readLongs(dst.array(), dst.arrayOffset() + dst.position(), count);
+            dst.position(dst.position() + count);
+        } else {
+            dst.put(readBytes(count * 8).asLongBuffer());
+        }
+    }
+
     public String readStringZ() {
-        // reads null terminated string
-        StringBuilder sb = new StringBuilder();
-        for (byte b = readByte(); b != 0; b = readByte())
-            sb.append((char) b);
-        return sb.toString();
+        // reads null terminated string, byte by byte. readers that have direct access to
+        // data buffer shall override it with bulk scan using indexOfZero
+        byte[] bytes = new byte[32];
+        int length = 0;
+        for (byte b = readByte(); b != 0; b = readByte()) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = b;
+        }
+        return decodeString(bytes, 0, length);
+    }
+
+    /**
+     * finds zero byte in buffer, scans it word (8 bytes) at a time
+     * @param buffer to scan, its position is not changed
+     * @param from index to start scan from (inclusive)
+     * @param to index to stop scan at (exclusive)
+     * @return index of zero byte or -1 if there is no one in range
+     */
+    public static int indexOfZero(ByteBuffer buffer, int from, int to) {
+        int idx = from;
+        boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        for (; idx + 8 <= to; idx += 8) {
+            // word has to be interpreted as little endian: exact match is the lowest marked byte,
+            // higher ones can be false positives due borrow
+            long word = buffer.getLong(idx);
+            if (!littleEndian)
+                word = Long.reverseBytes(word);
+            long zeroes = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zeroes != 0)
+                return idx + (Long.numberOfTrailingZeros(zeroes) >>> 3);
+        }
+        for (; idx < to; idx++) {
+            if (buffer.get(idx) == 0)
+                return idx;
+        }
+        return -1;
+    }
+
+    /**
+     * decodes string from bytes, ASCII strings (most of symbols) are decoded as Latin-1 which is direct
+     * byte to char copy, all others are decoded as UTF-8
+     */
+    public static String decodeString(byte[] bytes, int offset, int length) {
+        int idx = offset;
+        int end = offset + length;
+        while (idx < end && bytes[idx] >= 0)
+            idx++;
+        return new String(bytes, offset, length, idx == end ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
     }
 
     /**
@@ -61,6 +192,38 @@ public abstract class ByteReader {
         return s;
     }
 
+    /**
+     * peeks byte at position, doesn't change current pos
+     * @return byte at offset or -1 if offset is behind the limit
+     */
+    public int peekUnsignedByte(long at) {
+        if (at < 0 || at >= limit())
+            return -1;
+        long oldPos = position();
+        setPosition(at);
+        int b = readByte() & 0xFF;
+        setPosition(oldPos);
+        return b;
+    }
+
+    /**
+     * checks if bytes at position match prefix without decoding, doesn't change current pos
+     * @param at offset to compare at
+     * @param prefix bytes to compare with
+     * @return true if data at offset starts with prefix
+     */
+    public boolean startsWith(long at, byte[] prefix) {
+        if (at < 0 || at + prefix.length > limit())
+            return false;
+        long oldPos = position();
+        setPosition(at);
+        boolean res = true;
+        for (int idx = 0; idx < prefix.length && res; idx++)
+            res = readByte() == prefix[idx];
+        setPosition(oldPos);
+        return res;
+    }
+
     public String readString(int size) {
         try {
             byte[] byteArray = new byte[size];
@@ -90,6 +253,13 @@ public abstract class ByteReader {
 
     abstract public void order(ByteOrder order);
 
+    /**
+     * @return byte order values are decoded in
+     */
+    public ByteOrder order() {
+        return byteOrder;
+    }
+
     abstract public void setPosition(long offset);
 
     abstract public long position();
@@ -106,6 +276,22 @@ public abstract class ByteReader {
         setPosition(position() + bytesToSkip);
     }
 
+    /**
+     * diagnostic: returns how many times reader had to refill its buffer from underlying storage
+     */
+    public long refills() {
+        return 0;
+    }
+
+    /**
+     * hints that range is going to be read soon, readers that have a cache can load it ahead with large sequential
+     * reads. Doesn't change position, default implementation does nothing
+     * @param offset of range, in position space of this reader
+     * @param size of range
+     */
+    public void prefetch(long offset, long size) {
+    }
+
 
     /**
      * Interface that allows to read object from byte reader
@@ -123,6 +309,9 @@ public abstract class ByteReader {
      * Reads array elements from byte-buffer
      */
     public static class ArrayReader<T> implements Iterable<T> {
+        // splits smaller than this are not worth own slice and task
+        private static final int MIN_SPLIT_SIZE = 256;
+
         private final ByteReader bufferReader;
         private final long readerOffset;
         private final ObjectReader<T> objectReader;
@@ -177,6 +366,87 @@ public abstract class ByteReader {
             return size;
         }
 
+        /**
+         * Splits array by index ranges. Each split reads through its own slice of reader and has its own element
+         * instance (when elements are reused), so splits can be consumed from different threads
+         */
+        @Override
+        public Spliterator<T> spliterator() {
+            return new ArraySpliterator(0, size);
+        }
+
+        public Stream<T> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public Stream<T> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+
+        private class ArraySpliterator implements Spliterator<T> {
+            private int index;
+            private final int fence;
+            private ByteReader reader;
+            private T element;
+
+            private ArraySpliterator(int index, int fence) {
+                this.index = index;
+                this.fence = fence;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (index >= fence)
+                    return false;
+                action.accept(readNext());
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super T> action) {
+                while (index < fence)
+                    action.accept(readNext());
+            }
+
+            @Override
+            public Spliterator<T> trySplit() {
+                int middle = (index + fence) >>> 1;
+                if (middle - index < MIN_SPLIT_SIZE)
+                    return null;
+
+                // prefix goes to new split, this one continues from middle with new slice
+                ArraySpliterator prefix = new ArraySpliterator(index, middle);
+                index = middle;
+                reader = null;
+                return prefix;
+            }
+
+            @Override
+            public long estimateSize() {
+                return fence - index;
+            }
+
+            @Override
+            public int characteristics() {
+                return ORDERED | SIZED | SUBSIZED | NONNULL;
+            }
+
+            private T readNext() {
+                int elementSize = objectReader.objectSize();
+                if (reader == null) {
+                    // slice covers rest of the range, elements are read sequentially from it
+                    reader = bufferReader.sliceAt(readerOffset + (long) elementSize * index, (long) elementSize * (fence - index));
+                }
+                long pos = reader.position();
+                T object = objectReader.readObject(reader, reuseElement ? element : null);
+                if (reader.position() - pos != elementSize)
+                    throw new IllegalStateException("Object size specified doesn't match actual read from reader");
+                element = object;
+                index += 1;
+                return object;
+            }
+        }
+
         @Override
         public Iterator<T> iterator() {
             return new Iterator<T>() {
@@ -0,0 +1,96 @@
+package org.robovm.sdk.dyld.bytereader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects byte ranges that are going to be read, sorts and merges them and prefetches them from reader in single
+ * sequential sweep. Ranges that are closer than merge gap are merged into one as reading small gap is cheaper than
+ * extra seek or request.
+ */
+public class ReadPlan {
+    private static class Range {
+        private long start;
+        private long end;
+
+        private Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final long mergeGap;
+    private final List<Range> ranges = new ArrayList<>();
+    private long requestedBytes;
+
+    /**
+     * @param mergeGap maximum distance between ranges to be merged
+     */
+    public ReadPlan(long mergeGap) {
+        this.mergeGap = mergeGap;
+    }
+
+    public void add(long offset, long size) {
+        if (size <= 0)
+            return;
+        ranges.add(new Range(offset, offset + size));
+        requestedBytes += size;
+    }
+
+    /**
+     * @return sum of sizes of all added ranges, before merging
+     */
+    public long requestedBytes() {
+        return requestedBytes;
+    }
+
+    /**
+     * sorts ranges by offset and merges overlapping and close ones
+     * @return amount of ranges after merge
+     */
+    public int merge() {
+        if (ranges.size() < 2)
+            return ranges.size();
+
+        ranges.sort((o1, o2) -> Long.compare(o1.start, o2.start));
+        int mergedCount = 0;
+        Range last = ranges.get(0);
+        for (int idx = 1; idx < ranges.size(); idx++) {
+            Range range = ranges.get(idx);
+            if (range.start <= last.end + mergeGap) {
+                last.end = Math.max(last.end, range.end);
+            } else {
+                ranges.set(mergedCount++, last);
+                last = range;
+            }
+        }
+        ranges.set(mergedCount++, last);
+        ranges.subList(mergedCount, ranges.size()).clear();
+        return mergedCount;
+    }
+
+    /**
+     * @return amount of bytes that will be read by plan, including merged gaps
+     */
+    public long plannedBytes() {
+        merge();
+        long size = 0;
+        for (Range range : ranges)
+            size += range.end - range.start;
+        return size;
+    }
+
+    /**
+     * prefetches all ranges from reader in ascending order
+     */
+    public void prefetch(ByteReader reader) {
+        merge();
+        for (Range range : ranges)
+            reader.prefetch(range.start, range.end - range.start);
+    }
+
+    public void clear() {
+        ranges.clear();
+        requestedBytes = 0;
+    }
+}
@@ -0,0 +1,153 @@
+package org.robovm.sdk.dyld.bytereader;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of strings decoded from file, keyed by absolute file offset of string. Allows string that is referenced
+ * multiple times (e.g. from shared string table of several images) to be decoded once and share same String instance.
+ * Map is primitive open addressing one split into stripes with own lock, so it can be used from parallel decoders.
+ */
+public class StringPool {
+    private static final int STRIPE_COUNT = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 1024;
+    private static final long EMPTY = -1;
+
+    private static class Stripe {
+        private long[] keys;
+        private String[] values;
+        private int size;
+
+        private Stripe() {
+            keys = new long[INITIAL_STRIPE_CAPACITY];
+            values = new String[INITIAL_STRIPE_CAPACITY];
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    // statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StringPool() {
+        for (int idx = 0; idx < STRIPE_COUNT; idx++)
+            stripes[idx] = new Stripe();
+    }
+
+    /**
+     * returns string decoded at offset, decodes and adds it to pool if there is none yet
+     * @param offset absolute offset of string in file
+     * @param reader reader to decode string from if it is missing
+     * @param readerOffset offset of string in reader
+     */
+    public String get(long offset, ByteReader reader, long readerOffset) {
+        if (offset < 0)
+            throw new IllegalArgumentException("negative offset " + offset);
+        int hash = hash(offset);
+        Stripe stripe = stripes[hash & (STRIPE_COUNT - 1)];
+        String cached;
+        synchronized (stripe) {
+            cached = find(stripe, offset, hash);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        // decode outside the lock, in case of race first added string wins
+        String value = reader.readStringZ(readerOffset);
+        synchronized (stripe) {
+            String existing = find(stripe, offset, hash);
+            if (existing != null)
+                return existing;
+            put(stripe, offset, hash, value);
+        }
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        for (int idx = 0; idx < STRIPE_COUNT; idx++) {
+            synchronized (stripes[idx]) {
+                Stripe stripe = stripes[idx];
+                stripe.keys = new long[INITIAL_STRIPE_CAPACITY];
+                stripe.values = new String[INITIAL_STRIPE_CAPACITY];
+                Arrays.fill(stripe.keys, EMPTY);
+                stripe.size = 0;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StringPool{size=" + size() + ", hits=" + hits() + ", misses=" + misses() + "}";
+    }
+
+    private static String find(Stripe stripe, long key, int hash) {
+        int mask = stripe.keys.length - 1;
+        // stripe index takes lowest bits, slot is picked with remaining ones
+        for (int slot = (hash >>> 4) & mask; ; slot = (slot + 1) & mask) {
+            long slotKey = stripe.keys[slot];
+            if (slotKey == key)
+                return stripe.values[slot];
+            if (slotKey == EMPTY)
+                return null;
+        }
+    }
+
+    private static void put(Stripe stripe, long key, int hash, String value) {
+        // keep load factor under 0.5
+        if ((stripe.size + 1) * 2 > stripe.keys.length)
+            grow(stripe);
+        int mask = stripe.keys.length - 1;
+        int slot = (hash >>> 4) & mask;
+        while (stripe.keys[slot] != EMPTY)
+            slot = (slot + 1) & mask;
+        stripe.keys[slot] = key;
+        stripe.values[slot] = value;
+        stripe.size += 1;
+    }
+
+    private static void grow(Stripe stripe) {
+        long[] oldKeys = stripe.keys;
+        String[] oldValues = stripe.values;
+        stripe.keys = new long[oldKeys.length * 2];
+        stripe.values = new String[oldKeys.length * 2];
+        Arrays.fill(stripe.keys, EMPTY);
+        stripe.size = 0;
+        for (int idx = 0; idx < oldKeys.length; idx++) {
+            if (oldKeys[idx] != EMPTY)
+                put(stripe, oldKeys[idx], hash(oldKeys[idx]), oldValues[idx]);
+        }
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer, offsets are close to each other so bits have to be mixed
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,174 @@
+package org.robovm.sdk.dyld.bytereader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Declares layout of fixed size structure. Each call appends field of given size and returns its offset, fields
+ * are packed in order of declaration. Intended to initialize static final offset constants of struct, so these are
+ * constants for struct reader and decoding is just buffer access at fixed offsets:
+ * <pre>
+ *     private static final StructLayout&lt;DyLdCacheImageInfo&gt; LAYOUT = new StructLayout&lt;&gt;(DyLdCacheImageInfo::new);
+ *     private static final int ADDRESS = LAYOUT.uint64((o, v) -&gt; o.address = v);
+ *     private static final int PATH_OFFSET = LAYOUT.uint32((o, v) -&gt; o.pathFileOffset = v);
+ * </pre>
+ * Fields declared with setter are bound to object: StructReader created over layout decodes them without any
+ * hand written code. Fields declared without setter only reserve space and are skipped by decoder, these are
+ * enough for flyweight views that read fields at offsets directly.
+ * @param <T> of object layout is decoded into, Void for layouts that are not bound to object
+ */
+public class StructLayout<T> {
+    public interface IntField<T> {
+        void set(T object, int value);
+    }
+
+    public interface LongField<T> {
+        void set(T object, long value);
+    }
+
+    public interface StringField<T> {
+        void set(T object, String value);
+    }
+
+    /**
+     * field bound to object, kind tells how field is decoded and which setter is used
+     */
+    static final class Field<T> {
+        static final int UINT8 = 0;
+        static final int UINT16 = 1;
+        static final int INT32 = 2;
+        static final int UINT32 = 3;
+        static final int UINT64 = 4;
+        static final int CHARS = 5;
+
+        final int kind;
+        final int offset;
+        final int size;
+        final IntField<T> intField;
+        final LongField<T> longField;
+        final StringField<T> stringField;
+
+        private Field(int kind, int offset, int size, IntField<T> intField, LongField<T> longField,
+                      StringField<T> stringField) {
+            this.kind = kind;
+            this.offset = offset;
+            this.size = size;
+            this.intField = intField;
+            this.longField = longField;
+            this.stringField = stringField;
+        }
+    }
+
+    private final Supplier<T> factory;
+    private final List<Field<T>> fields = new ArrayList<>();
+    private int size;
+
+    /**
+     * creates layout that is not bound to object, its fields can't have setters
+     */
+    public StructLayout() {
+        this.factory = null;
+    }
+
+    /**
+     * creates layout bound to object
+     * @param factory creates empty object for decoder
+     */
+    public StructLayout(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * creates layout of structure that starts with other one, e.g. all load commands start with struct load_command.
+     * Only space of base fields is reserved, setters of these are not inherited
+     * @param base structure, its fields have to be declared already
+     */
+    public StructLayout(StructLayout<?> base) {
+        this.factory = null;
+        this.size = base.size;
+    }
+
+    public int uint8() {
+        return field(1);
+    }
+
+    public int uint16() {
+        return field(2);
+    }
+
+    public int uint32() {
+        return field(4);
+    }
+
+    public int uint64() {
+        return field(8);
+    }
+
+    public int chars(int count) {
+        return field(count);
+    }
+
+    public int uint8(IntField<T> setter) {
+        return bind(Field.UINT8, 1, setter, null, null);
+    }
+
+    public int uint16(IntField<T> setter) {
+        return bind(Field.UINT16, 2, setter, null, null);
+    }
+
+    /**
+     * signed 32 bit field, e.g. cpu_type_t
+     */
+    public int int32(IntField<T> setter) {
+        return bind(Field.INT32, 4, setter, null, null);
+    }
+
+    public int uint32(LongField<T> setter) {
+        return bind(Field.UINT32, 4, null, setter, null);
+    }
+
+    public int uint64(LongField<T> setter) {
+        return bind(Field.UINT64, 8, null, setter, null);
+    }
+
+    /**
+     * zero padded fixed size string, e.g. char sectname[16]
+     */
+    public int chars(int count, StringField<T> setter) {
+        return bind(Field.CHARS, count, null, null, setter);
+    }
+
+    /**
+     * appends field of any size
+     * @return offset of field
+     */
+    public int field(int fieldSize) {
+        int offset = size;
+        size += fieldSize;
+        return offset;
+    }
+
+    /**
+     * @return size of structure with all declared fields
+     */
+    public int size() {
+        return size;
+    }
+
+    private int bind(int kind, int fieldSize, IntField<T> intField, LongField<T> longField, StringField<T> stringField) {
+        if (factory == null)
+            throw new IllegalStateException("layout is not bound to object");
+        int offset = field(fieldSize);
+        fields.add(new Field<>(kind, offset, fieldSize, intField, longField, stringField));
+        return offset;
+    }
+
+    Supplier<T> factory() {
+        return factory;
+    }
+
+    List<Field<T>> fields() {
+        return fields;
+    }
+}
@@ -0,0 +1,195 @@
+package org.robovm.sdk.dyld.bytereader;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Object reader for structures with fixed layout (see StructLayout). Whole structure is read with single readBytes
+ * and fields are decoded at constant offsets of buffer, instead of field by field virtual reads. Same decode is
+ * used to decode whole arrays of structures from one buffer.
+ * Decoder is derived from fields bound in layout: these are copied into table once per struct and decode() walks
+ * that table, so new struct needs only layout declaration.
+ * @param <T> of structure
+ */
+public class StructReader<T> implements ByteReader.ObjectReader<T> {
+    private final Class<T> objectClass;
+    private final int objectSize;
+    private final Supplier<T> factory;
+    private final List<StructLayout.Field<T>> fields;
+    // all fields fit into 32 bit words, so arrays can be read with bulk readInt32s and decoded from words
+    private final boolean wordAligned;
+
+    public StructReader(Class<T> objectClass, StructLayout<T> layout) {
+        if (layout.factory() == null)
+            throw new IllegalArgumentException("layout is not bound to " + objectClass.getSimpleName());
+        this.objectClass = objectClass;
+        this.objectSize = layout.size();
+        this.factory = layout.factory();
+        this.fields = new ArrayList<>(layout.fields());
+        boolean wordAligned = objectSize % 4 == 0;
+        for (StructLayout.Field<T> field : fields) {
+            if (field.kind == StructLayout.Field.CHARS)
+                wordAligned = false;
+            else if (field.size == 8 ? field.offset % 4 != 0 : field.offset / 4 != (field.offset + field.size - 1) / 4)
+                wordAligned = false;
+        }
+        this.wordAligned = wordAligned;
+    }
+
+    /**
+     * decodes structure from buffer
+     * @param buffer with data, ordered with byte order of structure
+     * @param offset absolute offset of structure in buffer
+     * @param object to decode into or null if new one has to be created
+     * @return decoded object
+     */
+    public T decode(ByteBuffer buffer, int offset, T object) {
+        T res = object != null ? object : factory.get();
+        for (int idx = 0; idx < fields.size(); idx++) {
+            StructLayout.Field<T> field = fields.get(idx);
+            int fieldOffset = offset + field.offset;
+            switch (field.kind) {
+                case StructLayout.Field.UINT8:
+                    field.intField.set(res, uint8(buffer, fieldOffset));
+                    break;
+                case StructLayout.Field.UINT16:
+                    field.intField.set(res, uint16(buffer, fieldOffset));
+                    break;
+                case StructLayout.Field.INT32:
+                    field.intField.set(res, buffer.getInt(fieldOffset));
+                    break;
+                case StructLayout.Field.UINT32:
+                    field.longField.set(res, uint32(buffer, fieldOffset));
+                    break;
+                case StructLayout.Field.UINT64:
+                    field.longField.set(res, buffer.getLong(fieldOffset));
+                    break;
+                case StructLayout.Field.CHARS:
+                    field.stringField.set(res, chars(buffer, fieldOffset, field.size));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown field kind " + field.kind);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Class<T> objectClass() {
+        return objectClass;
+    }
+
+    @Override
+    public int objectSize() {
+        return objectSize;
+    }
+
+    @Override
+    public T readObject(ByteReader reader, T object) {
+        return reader.readStruct(this, object);
+    }
+
+    /**
+     * reads array of structures with single bulk read. Word aligned structures are read with readInt32s straight
+     * into int array, others through readBytes view
+     * @param reader positioned at first structure
+     * @param count of structures
+     */
+    public T[] readAll(ByteReader reader, int count) {
+        @SuppressWarnings("unchecked")
+        T[] res = (T[]) Array.newInstance(objectClass, count);
+        if (wordAligned) {
+            int wordCount = objectSize / 4;
+            int[] words = new int[count * wordCount];
+            reader.readInt32s(words, 0, words.length);
+            boolean littleEndian = reader.order() == ByteOrder.LITTLE_ENDIAN;
+            for (int idx = 0; idx < count; idx++)
+                res[idx] = decode(words, idx * wordCount, littleEndian, null);
+        } else {
+            ByteBuffer buffer = reader.readBytes(count * objectSize);
+            decodeAll(buffer, buffer.position(), res, 0, count);
+        }
+        return res;
+    }
+
+    /**
+     * decodes word aligned structure from 32 bit words, these were read in byte order of structure
+     * @param words with data
+     * @param wordIdx index of first word of structure
+     * @param littleEndian true if words were read as little endian
+     * @param object to decode into or null if new one has to be created
+     * @return decoded object
+     */
+    private T decode(int[] words, int wordIdx, boolean littleEndian, T object) {
+        T res = object != null ? object : factory.get();
+        for (int idx = 0; idx < fields.size(); idx++) {
+            StructLayout.Field<T> field = fields.get(idx);
+            int word = words[wordIdx + field.offset / 4];
+            if (field.kind == StructLayout.Field.UINT64) {
+                int next = words[wordIdx + field.offset / 4 + 1];
+                long value = littleEndian ? ((long) next << 32) | (word & 0xFFFFFFFFL)
+                        : ((long) word << 32) | (next & 0xFFFFFFFFL);
+                field.longField.set(res, value);
+                continue;
+            }
+
+            // position of field bits inside of word depends on byte order
+            int byteInWord = field.offset % 4;
+            int shift = littleEndian ? byteInWord * 8 : (4 - byteInWord - field.size) * 8;
+            switch (field.kind) {
+                case StructLayout.Field.UINT8:
+                    field.intField.set(res, (word >>> shift) & 0xFF);
+                    break;
+                case StructLayout.Field.UINT16:
+                    field.intField.set(res, (word >>> shift) & 0xFFFF);
+                    break;
+                case StructLayout.Field.INT32:
+                    field.intField.set(res, word);
+                    break;
+                case StructLayout.Field.UINT32:
+                    field.longField.set(res, word & 0xFFFFFFFFL);
+                    break;
+                default:
+                    throw new IllegalStateException("Field kind " + field.kind + " can't be decoded from words");
+            }
+        }
+        return res;
+    }
+
+    /**
+     * decodes consecutive structures from buffer into new objects
+     */
+    public void decodeAll(ByteBuffer buffer, int offset, T[] dst, int dstOffset, int count) {
+        for (int idx = 0; idx < count; idx++, offset += objectSize)
+            dst[dstOffset + idx] = decode(buffer, offset, null);
+    }
+
+    protected static int uint8(ByteBuffer buffer, int offset) {
+        return buffer.get(offset) & 0xFF;
+    }
+
+    protected static int uint16(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset) & 0xFFFF;
+    }
+
+    protected static long uint32(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * decodes zero padded fixed size string, e.g. char sectname[16]
+     */
+    protected static String chars(ByteBuffer buffer, int offset, int size) {
+        int strLen = 0;
+        while (strLen < size && buffer.get(offset + strLen) != 0)
+            strLen++;
+        byte[] bytes = new byte[strLen];
+        for (int idx = 0; idx < strLen; idx++)
+            bytes[idx] = buffer.get(offset + idx);
+        return ByteReader.decodeString(bytes, 0, strLen);
+    }
+}
@@ -0,0 +1,287 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Size bounded cache of fixed size pages with LRU eviction. Pages are loaded from source on demand, once loaded
+ * page is never modified so it can be shared between readers/threads without copying.
+ * Single cache is expected to be shared between all slices of same file.
+ * For sources with high per request cost (e.g. network) missing pages that follow requested one can be coalesced
+ * into single source request.
+ * Pages being loaded are tracked, so reader that misses page that is already being loaded (e.g. by background
+ * prefetch) waits for that load instead of reading page once more.
+ */
+public class BlockCache {
+    // maximum amount of pages loaded with single request during prefetch
+    private static final int PREFETCH_RUN_PAGES = 64;
+
+    /**
+     * Source of data to be cached
+     */
+    public interface Source {
+        long length();
+        void read(long offset, byte[] buffer, int bufferOffset, int size) throws IOException;
+    }
+
+    private final Source source;
+    private final int pageShift;
+    private final int pageSize;
+    private final int maxPages;
+    private final int coalescePages;
+    private final LinkedHashMap<Long, byte[]> pages;
+    // pages being loaded from source, guarded by pages lock
+    private final Map<Long, CompletableFuture<byte[]>> loadingPages = new HashMap<>();
+
+    // statistics
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loads;
+
+    /**
+     * @param source to read pages from
+     * @param pageSize size of page, shall be power of 2
+     * @param maxPages maximum amount of pages to keep in cache
+     */
+    public BlockCache(Source source, int pageSize, int maxPages) {
+        this(source, pageSize, maxPages, 1);
+    }
+
+    /**
+     * @param source to read pages from
+     * @param pageSize size of page, shall be power of 2
+     * @param maxPages maximum amount of pages to keep in cache
+     * @param coalescePages maximum amount of consecutive missing pages to be loaded with single source request
+     */
+    public BlockCache(Source source, int pageSize, int maxPages, int coalescePages) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1)
+            throw new IllegalArgumentException("page size shall be power of 2: " + pageSize);
+        if (maxPages <= 0)
+            throw new IllegalArgumentException("max pages shall be positive: " + maxPages);
+        if (coalescePages <= 0 || coalescePages > maxPages)
+            throw new IllegalArgumentException("coalesce pages shall be in range 1.." + maxPages + ": " + coalescePages);
+        this.source = source;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.coalescePages = coalescePages;
+        this.pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                if (size() <= BlockCache.this.maxPages)
+                    return false;
+                evictions += 1;
+                return true;
+            }
+        };
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public int pageShift() {
+        return pageShift;
+    }
+
+    public int maxPages() {
+        return maxPages;
+    }
+
+    public long length() {
+        return source.length();
+    }
+
+    /**
+     * returns page that contains data at specified offset. Page is shorter than page size only if it is last one
+     * @param pageIdx index of page (offset >> pageShift)
+     * @return page data, shall not be modified
+     */
+    public byte[] page(long pageIdx) throws IOException {
+        return page(pageIdx, coalescePages);
+    }
+
+    /**
+     * loads all missing pages of range in ascending order, consecutive missing pages are loaded with single request
+     */
+    public void prefetch(long offset, long size) throws IOException {
+        long end = Math.min(offset + size, source.length());
+        if (offset < 0 || end <= offset)
+            return;
+        long lastPageIdx = (end - 1) >> pageShift;
+        int maxRunLength = Math.min(Math.max(coalescePages, PREFETCH_RUN_PAGES), maxPages);
+        for (long pageIdx = offset >> pageShift; pageIdx <= lastPageIdx; pageIdx++) {
+            boolean cached;
+            synchronized (pages) {
+                cached = pages.containsKey(pageIdx) || loadingPages.containsKey(pageIdx);
+            }
+            if (!cached)
+                page(pageIdx, (int) Math.min(maxRunLength, lastPageIdx - pageIdx + 1));
+        }
+    }
+
+    private byte[] page(long pageIdx, int maxRunLength) throws IOException {
+        Long key = pageIdx;
+        while (true) {
+            CompletableFuture<byte[]> pending;
+            List<CompletableFuture<byte[]>> run = null;
+            synchronized (pages) {
+                byte[] page = pages.get(key);
+                if (page != null) {
+                    hits += 1;
+                    return page;
+                }
+                misses += 1;
+                pending = loadingPages.get(key);
+                if (pending == null) {
+                    loads += 1;
+
+                    // coalesce with following missing pages that are not being loaded
+                    long lastPageIdx = (source.length() - 1) >> pageShift;
+                    int runLength = 1;
+                    while (runLength < maxRunLength && pageIdx + runLength <= lastPageIdx &&
+                            !pages.containsKey(pageIdx + runLength) && !loadingPages.containsKey(pageIdx + runLength))
+                        runLength += 1;
+                    run = new ArrayList<>(runLength);
+                    for (int idx = 0; idx < runLength; idx++) {
+                        CompletableFuture<byte[]> future = new CompletableFuture<>();
+                        run.add(future);
+                        loadingPages.put(pageIdx + idx, future);
+                    }
+                }
+            }
+
+            // load outside the lock, other slices shall not wait for this io
+            if (run != null)
+                return loadRun(pageIdx, run);
+
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for page load", e);
+            } catch (ExecutionException e) {
+                // load by other reader failed, retry with own one to get own error
+            }
+        }
+    }
+
+    /**
+     * loads pages that are registered as loading and completes their futures
+     */
+    private byte[] loadRun(long pageIdx, List<CompletableFuture<byte[]>> run) throws IOException {
+        byte[][] loaded;
+        try {
+            loaded = loadPages(pageIdx, run.size());
+        } catch (IOException | RuntimeException e) {
+            synchronized (pages) {
+                for (int idx = 0; idx < run.size(); idx++)
+                    loadingPages.remove(pageIdx + idx);
+            }
+            for (CompletableFuture<byte[]> future : run)
+                future.completeExceptionally(e);
+            throw e;
+        }
+
+        synchronized (pages) {
+            // following pages first, so requested one is the most recent
+            for (int idx = run.size() - 1; idx >= 0; idx--) {
+                loadingPages.remove(pageIdx + idx);
+                pages.put(pageIdx + idx, loaded[idx]);
+            }
+        }
+        for (int idx = 0; idx < run.size(); idx++)
+            run.get(idx).complete(loaded[idx]);
+        return loaded[0];
+    }
+
+    private byte[][] loadPages(long firstPageIdx, int count) throws IOException {
+        long offset = firstPageIdx << pageShift;
+        long size = Math.min((long) count << pageShift, source.length() - offset);
+        if (size <= 0)
+            throw new IOException("Page behind the end of source @" + Long.toHexString(offset));
+        byte[] data = new byte[(int) size];
+        source.read(offset, data, 0, data.length);
+        if (count == 1)
+            return new byte[][]{data};
+
+        // split into pages
+        byte[][] res = new byte[count][];
+        for (int idx = 0; idx < count; idx++)
+            res[idx] = Arrays.copyOfRange(data, idx << pageShift, Math.min((idx + 1) << pageShift, data.length));
+        return res;
+    }
+
+    /**
+     * copies data from cache into buffer, loads missing pages
+     */
+    public void read(long offset, byte[] buffer, int bufferOffset, int size) throws IOException {
+        while (size > 0) {
+            byte[] page = page(offset >> pageShift);
+            int pageOffset = (int) (offset & (pageSize - 1));
+            int chunk = Math.min(size, page.length - pageOffset);
+            System.arraycopy(page, pageOffset, buffer, bufferOffset, chunk);
+            offset += chunk;
+            bufferOffset += chunk;
+            size -= chunk;
+        }
+    }
+
+    public long hits() {
+        synchronized (pages) {
+            return hits;
+        }
+    }
+
+    public long misses() {
+        synchronized (pages) {
+            return misses;
+        }
+    }
+
+    public long evictions() {
+        synchronized (pages) {
+            return evictions;
+        }
+    }
+
+    /**
+     * @return amount of requests made to source
+     */
+    public long loads() {
+        synchronized (pages) {
+            return loads;
+        }
+    }
+
+    public void resetStats() {
+        synchronized (pages) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+            loads = 0;
+        }
+    }
+
+    public void clear() {
+        synchronized (pages) {
+            pages.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (pages) {
+            return "BlockCache{pageSize=" + pageSize + ", pages=" + pages.size() + "/" + maxPages + ", hits=" + hits +
+                    ", misses=" + misses + ", evictions=" + evictions + ", loads=" + loads + "}";
+        }
+    }
+}
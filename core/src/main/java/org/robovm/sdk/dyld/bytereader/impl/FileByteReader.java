@@ -2,15 +2,49 @@ package org.robovm.sdk.dyld.bytereader.impl;
 
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader that reads file using positional reads (pread) over file channel. There is no shared file pointer,
+ * each slice keeps own position and read buffer, so slices can be read concurrently from different threads
+ * without any locking.
+ * Optionally reads can go through block cache that is shared by all slices of reader, in this case slice doesn't
+ * own a read buffer but points to cached page.
+ * In read-ahead mode slice that is being read sequentially fetches next block on background io thread while current
+ * one is being decoded: uncached slice double buffers, cached one prefetches next page into cache
+ */
 public class FileByteReader extends ByteReader {
+    private static final int READ_BUFFER_SIZE = 2048;
+    // bigger buffer is used in read-ahead mode to keep background thread busy with fewer hand-offs
+    private static final int READ_AHEAD_BUFFER_SIZE = 32 * 1024;
+
+    // read-ahead requests that wait for io thread, once it is backed up new ones are dropped as these would run
+    // too late and just evict live pages
+    private static final int READ_AHEAD_QUEUE_SIZE = 8;
+
+    // single io thread shared by all readers, created on first use
+    private static ExecutorService readAheadExecutor;
+
     private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long fileLength;
+    private final BlockCache blockCache;
+    private final boolean readAhead;
     private long position;
     private long limit;
     private long fileStartOffset;
@@ -19,81 +53,149 @@ public class FileByteReader extends ByteReader {
     private byte readBuffer[];
     private long readBufferPos;
     private ByteBuffer readByteBuffer;
+    private long refills;
+
+    // read-ahead stuff: block being read in background into spare buffer
+    private Future<byte[]> readAheadTask;
+    private long readAheadPos;
 
     public FileByteReader(RandomAccessFile file) {
+        this(file, false);
+    }
+
+    /**
+     * creates uncached reader
+     * @param file to read
+     * @param readAhead true to read next block in background while slice is being read sequentially
+     */
+    public FileByteReader(RandomAccessFile file, boolean readAhead) {
         this.file = file;
+        this.channel = file.getChannel();
         try {
-            this.limit = file.length();
+            this.fileLength = channel.size();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        this.limit = fileLength;
+        this.blockCache = null;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * creates reader with block cache that will be shared by all slices of this reader
+     * @param file to read
+     * @param cachePageSize size of cache page, power of 2
+     * @param cacheMaxPages maximum amount of pages kept in cache
+     */
+    public FileByteReader(RandomAccessFile file, int cachePageSize, int cacheMaxPages) {
+        this(file, cachePageSize, cacheMaxPages, false);
+    }
+
+    /**
+     * creates reader with block cache that will be shared by all slices of this reader
+     * @param file to read
+     * @param cachePageSize size of cache page, power of 2
+     * @param cacheMaxPages maximum amount of pages kept in cache
+     * @param readAhead true to prefetch next page in background while slice is being read sequentially
+     */
+    public FileByteReader(RandomAccessFile file, int cachePageSize, int cacheMaxPages, boolean readAhead) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.fileLength = fileLength(file);
+        this.limit = fileLength;
+        this.blockCache = new BlockCache(new BlockCache.Source() {
+            @Override
+            public long length() {
+                return fileLength;
+            }
+
+            @Override
+            public void read(long offset, byte[] buffer, int bufferOffset, int size) throws IOException {
+                readFully(channel, ByteBuffer.wrap(buffer, bufferOffset, size), offset);
+            }
+        }, cachePageSize, cacheMaxPages);
+        this.readAhead = readAhead;
     }
 
     public FileByteReader(RandomAccessFile file, ByteOrder byteOrder, long limit, long fileStartOffset) {
+        this(file, file.getChannel(), fileLength(file), null, false, byteOrder, limit, fileStartOffset);
+    }
+
+    public FileByteReader(FileByteReader fileReader) {
+        this(fileReader.file, fileReader.channel, fileReader.fileLength, fileReader.blockCache, fileReader.readAhead, fileReader.byteOrder,
+                fileReader.limit, fileReader.fileStartOffset);
+    }
+
+    private FileByteReader(RandomAccessFile file, FileChannel channel, long fileLength, BlockCache blockCache,
+                           boolean readAhead, ByteOrder byteOrder, long limit, long fileStartOffset) {
         this.file = file;
+        this.channel = channel;
+        this.fileLength = fileLength;
+        this.blockCache = blockCache;
+        this.readAhead = readAhead;
         this.byteOrder = byteOrder;
         this.limit = limit;
         this.fileStartOffset = fileStartOffset;
     }
 
-    public FileByteReader(FileByteReader fileReader) {
-        this(fileReader.file, fileReader.byteOrder, fileReader.limit, fileReader.fileStartOffset);
-    }
-
     public void close() throws IOException {
         file.close();
     }
 
+    @Override
+    public long refills() {
+        return refills;
+    }
+
+    /**
+     * @return block cache shared by slices of this reader or null if reader is not cached
+     */
+    public BlockCache blockCache() {
+        return blockCache;
+    }
+
     @Override
     public FileByteReader slice() {
-        return new FileByteReader(file, byteOrder, limit - position, fileStartOffset + position );
+        return new FileByteReader(file, channel, fileLength, blockCache, readAhead, byteOrder, limit - position, fileStartOffset + position );
     }
 
     @Override
     public FileByteReader slice(long sliceLimit) {
         if (sliceLimit > limit - position)
             throw new RuntimeException("Slicing behind the limit!");
-        return new FileByteReader(file, byteOrder, sliceLimit, fileStartOffset + position );
+        return new FileByteReader(file, channel, fileLength, blockCache, readAhead, byteOrder, sliceLimit, fileStartOffset + position );
     }
 
     @Override
     public ByteReader sliceAt(long offset) {
         if (offset < 0 || offset >= limit)
             throw new RuntimeException("Slicing behind the limit!");
-        return new FileByteReader(file, byteOrder, limit - offset, fileStartOffset + offset);
+        return new FileByteReader(file, channel, fileLength, blockCache, readAhead, byteOrder, limit - offset, fileStartOffset + offset);
     }
 
     @Override
     public FileByteReader sliceAt(long offset, long sliceLimit) {
         if (offset < 0 || sliceLimit < 0 || offset + sliceLimit > limit)
             throw new RuntimeException("Slicing behind the limit!");
-        return new FileByteReader(file, byteOrder, sliceLimit, fileStartOffset + offset);
+        return new FileByteReader(file, channel, fileLength, blockCache, readAhead, byteOrder, sliceLimit, fileStartOffset + offset);
     }
 
 
     @Override
     public void get(byte[] bytes) {
-        sanityReadSize(bytes.length);
-        try {
-            synchronized (file) {
-                file.seek(fileStartOffset + position);
-                position += bytes.length;
-                file.read(bytes);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        get(bytes, 0, bytes.length);
     }
 
     @Override
     public void get(byte[] bytes, int offset, int size) {
         sanityReadSize(size);
         try {
-            synchronized (file) {
-                file.seek(fileStartOffset + position);
-                position += size;
-                file.read(bytes, offset, size);
-            }
+            long readPos = fileStartOffset + position;
+            if (blockCache != null)
+                blockCache.read(readPos, bytes, offset, size);
+            else
+                readFully(channel, ByteBuffer.wrap(bytes, offset, size), readPos);
+            position += size;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -104,16 +206,13 @@ public class FileByteReader extends ByteReader {
     public byte readByte() {
         sanityReadSize(1);
         try {
-            synchronized (file) {
-                long readPos = fileStartOffset + position;
-                position += 1;
+            long readPos = fileStartOffset + position;
 
-                // only buffered read
-                int readBufferOffset = prepareBufferedRead(readPos, 1);
-                return readBuffer[readBufferOffset];
-            }
+            // only buffered read
+            int readBufferOffset = prepareBufferedRead(readPos, 1);
+            position += 1;
+            return readBuffer[readBufferOffset];
         } catch (IOException e) {
-            position -= 1; // revert position back
             throw new RuntimeException(e);
         }
     }
@@ -122,16 +221,12 @@ public class FileByteReader extends ByteReader {
     public char getChar() {
         sanityReadSize(2);
         try {
-            synchronized (file) {
-                long readPos = fileStartOffset + position;
-                position += 2;
-
-                // only buffered read
-                int readBufferOffset = prepareBufferedRead(readPos, 2);
-                readByteBuffer.position(readBufferOffset);
-                char c = readByteBuffer.getChar();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? c : Character.reverseBytes(c);
-            }
+            long readPos = fileStartOffset + position;
+
+            // only buffered read
+            int readBufferOffset = prepareBufferedRead(readPos, 2);
+            position += 2;
+            return readByteBuffer.getChar(readBufferOffset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -141,16 +236,12 @@ public class FileByteReader extends ByteReader {
     public short readShort() {
         sanityReadSize(2);
         try {
-            synchronized (file) {
-                long readPos = fileStartOffset + position;
-                position += 2;
-
-                // only buffered read
-                int readBufferOffset = prepareBufferedRead(readPos, 2);
-                readByteBuffer.position(readBufferOffset);
-                short s = readByteBuffer.getShort();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? s : Short.reverseBytes(s);
-            }
+            long readPos = fileStartOffset + position;
+
+            // only buffered read
+            int readBufferOffset = prepareBufferedRead(readPos, 2);
+            position += 2;
+            return readByteBuffer.getShort(readBufferOffset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -161,16 +252,12 @@ public class FileByteReader extends ByteReader {
     public int readInt32() {
         sanityReadSize(4);
         try {
-            synchronized (file) {
-                long readPos = fileStartOffset + position;
-                position += 4;
-
-                // only buffered read
-                int readBufferOffset = prepareBufferedRead(readPos, 4);
-                readByteBuffer.position(readBufferOffset);
-                int i = readByteBuffer.getInt();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? i : Integer.reverseBytes(i);
-            }
+            long readPos = fileStartOffset + position;
+
+            // only buffered read
+            int readBufferOffset = prepareBufferedRead(readPos, 4);
+            position += 4;
+            return readByteBuffer.getInt(readBufferOffset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -181,16 +268,12 @@ public class FileByteReader extends ByteReader {
     public long readLong() {
         sanityReadSize(8);
         try {
-            synchronized (file) {
-                long readPos = fileStartOffset + position;
-                position += 8;
-
-                // only buffered read
-                int readBufferOffset = prepareBufferedRead(readPos, 8);
-                readByteBuffer.position(readBufferOffset);
-                long l = readByteBuffer.getLong();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? l : Long.reverseBytes(l);
-            }
+            long readPos = fileStartOffset + position;
+
+            // only buffered read
+            int readBufferOffset = prepareBufferedRead(readPos, 8);
+            position += 8;
+            return readByteBuffer.getLong(readBufferOffset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -199,13 +282,64 @@ public class FileByteReader extends ByteReader {
 
     @Override
     public float getFloat() {
-        sanityReadSize(4);
+        return Float.intBitsToFloat(readInt32());
+    }
+
+
+    @Override
+    public double getDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+
+    @Override
+    public ByteBuffer readBytes(int size) {
+        // only cached pages are immutable and can be returned as view, own buffer is reused
+        if (blockCache == null)
+            return super.readBytes(size);
+
+        sanityReadSize(size);
+        try {
+            long readPos = fileStartOffset + position;
+            int readBufferOffset = prepareBufferedRead(readPos, size);
+            position += size;
+            return ByteBuffer.wrap(readBuffer, readBufferOffset, size).asReadOnlyBuffer().order(byteOrder);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        int size = structReader.objectSize();
+        sanityReadSize(size);
         try {
-            synchronized (file) {
-                file.seek(fileStartOffset + position);
-                position += 4;
-                float f = file.readFloat();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? f : Float.intBitsToFloat(Integer.reverse(Float.floatToIntBits(f)));
+            long readPos = fileStartOffset + position;
+
+            // structure is decoded right away, so reused own buffer is fine here
+            int readBufferOffset = prepareBufferedRead(readPos, size);
+            position += size;
+            return structReader.decode(readByteBuffer, readBufferOffset, object);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public void readInt32s(int[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        try {
+            while (count > 0) {
+                // decode what is in buffer already, it is refilled for the rest
+                int readBufferOffset = prepareBufferedRead(fileStartOffset + position, 4);
+                int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 4);
+                for (int idx = 0; idx < chunk; idx++)
+                    dst[offset + idx] = readByteBuffer.getInt(readBufferOffset + idx * 4);
+                position += chunk * 4L;
+                offset += chunk;
+                count -= chunk;
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -214,30 +348,92 @@ public class FileByteReader extends ByteReader {
 
 
     @Override
-    public double getDouble() {
-        sanityReadSize(8);
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        try {
+            while (count > 0) {
+                // decode what is in buffer already, it is refilled for the rest
+                int readBufferOffset = prepareBufferedRead(fileStartOffset + position, 4);
+                int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 4);
+                for (int idx = 0; idx < chunk; idx++)
+                    dst[offset + idx] = readByteBuffer.getInt(readBufferOffset + idx * 4) & 0xFFFFFFFFL;
+                position += chunk * 4L;
+                offset += chunk;
+                count -= chunk;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public void readLongs(long[] dst, int offset, int count) {
+        sanityReadSize(count * 8L);
+        try {
+            while (count > 0) {
+                // decode what is in buffer already, it is refilled for the rest
+                int readBufferOffset = prepareBufferedRead(fileStartOffset + position, 8);
+                int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 8);
+                for (int idx = 0; idx < chunk; idx++)
+                    dst[offset + idx] = readByteBuffer.getLong(readBufferOffset + idx * 8);
+                position += chunk * 8L;
+                offset += chunk;
+                count -= chunk;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    @Override
+    public String readStringZ() {
+        sanityReadSize(1);
         try {
-            synchronized (file) {
-                file.seek(fileStartOffset + position);
-                position += 8;
-                double d = file.readDouble();
-                return byteOrder == ByteOrder.BIG_ENDIAN ? d : Double.longBitsToDouble(Long.reverse(Double.doubleToLongBits(d)));
+            long readPos = fileStartOffset + position;
+            int readBufferOffset = prepareBufferedRead(readPos, 1);
+
+            // scan what is available in buffer, but not behind the limit
+            int scanEnd = (int) Math.min(readBuffer.length, readBufferOffset + limit - position);
+            int zeroIdx = indexOfZero(readByteBuffer, readBufferOffset, scanEnd);
+            if (zeroIdx >= 0) {
+                position += zeroIdx - readBufferOffset + 1;
+                return decodeString(readBuffer, readBufferOffset, zeroIdx - readBufferOffset);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        // string crosses buffer boundary, rare case
+        return super.readStringZ();
+    }
+
+
+    @Override
+    public void prefetch(long offset, long size) {
+        if (blockCache == null || offset < 0 || offset >= limit)
+            return;
+        try {
+            blockCache.prefetch(fileStartOffset + offset, Math.min(size, limit - offset));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
 
     @Override
     public void order(ByteOrder order) {
+        // byte order is applied to buffer once here, so primitive reads decode in it without per call check
         this.byteOrder = order;
+        if (readByteBuffer != null)
+            readByteBuffer.order(order);
     }
 
 
     @Override
     public void setPosition(long offset) {
-        if (position < 0 || position > limit)
+        if (offset < 0 || offset > limit)
             throw new IllegalArgumentException();
         this.position = offset;
     }
@@ -277,18 +473,175 @@ public class FileByteReader extends ByteReader {
                 return (int) readBufferOffset;
         }
 
+        // buffer miss, pick page from cache if there is one
+        refills += 1;
+        if (blockCache != null)
+            return prepareCachedRead(readPos, readLength);
+        if (readAhead)
+            return prepareReadAheadRead(readPos, readLength);
+
         // buffer miss, read buff
-        long bytesAvailable = file.length() - readPos;
-        bytesAvailable = Math.min(bytesAvailable, 2048);
+        long bytesAvailable = fileLength - readPos;
+        bytesAvailable = Math.min(bytesAvailable, READ_BUFFER_SIZE);
 
         // reallocate buffer if needed
         readBufferPos = readPos;
         if (readBuffer == null || readBuffer.length != bytesAvailable) {
             readBuffer = new byte[(int) bytesAvailable];
-            readByteBuffer = ByteBuffer.wrap(readBuffer);
+            readByteBuffer = ByteBuffer.wrap(readBuffer).order(byteOrder);
         }
-        file.seek(readPos);
-        file.read(readBuffer);
+        readByteBuffer.clear();
+        readFully(channel, readByteBuffer, readPos);
         return 0;
     }
+
+    private int prepareCachedRead(long readPos, int readLength) throws IOException {
+        int pageShift = blockCache.pageShift();
+        long pageIdx = readPos >> pageShift;
+        int pageOffset = (int) (readPos - (pageIdx << pageShift));
+        if (readAhead && readBuffer != null && readBufferPos == (pageIdx - 1) << pageShift)
+            startPagePrefetch((pageIdx + 1) << pageShift);
+        byte[] page = blockCache.page(pageIdx);
+        if (pageOffset + readLength <= page.length) {
+            // use page directly as read buffer, no copy
+            readBuffer = page;
+            readBufferPos = pageIdx << pageShift;
+            readByteBuffer = ByteBuffer.wrap(page).order(byteOrder);
+            return pageOffset;
+        }
+
+        // read crosses page boundary, compose it in own small buffer
+        readBuffer = new byte[readLength];
+        readBufferPos = readPos;
+        readByteBuffer = ByteBuffer.wrap(readBuffer).order(byteOrder);
+        blockCache.read(readPos, readBuffer, 0, readLength);
+        return 0;
+    }
+
+    private int prepareReadAheadRead(long readPos, int readLength) throws IOException {
+        // moving forward from current buffer is considered as sequential scan
+        boolean sequential = readBuffer != null && readPos >= readBufferPos && readPos <= readBufferPos + readBuffer.length;
+        long readAheadPos = this.readAheadPos;
+        byte[] readAheadBuffer = completeReadAhead();
+        byte[] spareBuffer;
+        if (readAheadBuffer != null && readPos >= readAheadPos && readPos + readLength <= readAheadPos + readAheadBuffer.length) {
+            // data is already read in background, swap buffers
+            spareBuffer = readBuffer;
+            setReadBuffer(readAheadBuffer, readAheadPos);
+        } else {
+            spareBuffer = readAheadBuffer;
+            int size = (int) Math.min(fileStartOffset + limit - readPos, READ_AHEAD_BUFFER_SIZE);
+            setReadBuffer(reuseBuffer(readBuffer, size), readPos);
+            readByteBuffer.clear();
+            readFully(channel, readByteBuffer, readPos);
+        }
+
+        if (sequential)
+            startReadAhead(spareBuffer);
+        return (int) (readPos - readBufferPos);
+    }
+
+    private void setReadBuffer(byte[] buffer, long bufferPos) {
+        if (readBuffer != buffer || readByteBuffer == null) {
+            readBuffer = buffer;
+            readByteBuffer = ByteBuffer.wrap(buffer).order(byteOrder);
+        }
+        readBufferPos = bufferPos;
+    }
+
+    /**
+     * starts background read of block that follows current read buffer into spare buffer
+     */
+    private void startReadAhead(byte[] spareBuffer) {
+        long nextPos = readBufferPos + readBuffer.length;
+        long end = fileStartOffset + limit;
+        if (nextPos >= end)
+            return;
+        byte[] buffer = reuseBuffer(spareBuffer, (int) Math.min(end - nextPos, READ_AHEAD_BUFFER_SIZE));
+        readAheadPos = nextPos;
+        try {
+            readAheadTask = readAheadExecutor().submit(() -> {
+                readFully(channel, ByteBuffer.wrap(buffer), nextPos);
+                return buffer;
+            });
+        } catch (RejectedExecutionException ignored) {
+            // io thread is backed up, block will be read in foreground
+        }
+    }
+
+    /**
+     * waits for background read to complete
+     * @return buffer filled with data at readAheadPos or null if there was no read ahead
+     */
+    private byte[] completeReadAhead() throws IOException {
+        if (readAheadTask == null)
+            return null;
+        try {
+            return readAheadTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for read ahead", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            readAheadTask = null;
+        }
+    }
+
+    /**
+     * prefetches page at file offset into block cache in background, if it is inside slice
+     */
+    private void startPagePrefetch(long pagePos) {
+        long end = fileStartOffset + limit;
+        if (pagePos >= end)
+            return;
+        long size = Math.min(end - pagePos, blockCache.pageSize());
+        try {
+            readAheadExecutor().submit(() -> {
+                // page will be loaded in foreground if this fails
+                blockCache.prefetch(pagePos, size);
+                return null;
+            });
+        } catch (RejectedExecutionException ignored) {
+            // io thread is backed up, page will be loaded in foreground
+        }
+    }
+
+    private static byte[] reuseBuffer(byte[] buffer, int size) {
+        return buffer != null && buffer.length == size ? buffer : new byte[size];
+    }
+
+    private static synchronized ExecutorService readAheadExecutor() {
+        if (readAheadExecutor == null) {
+            readAheadExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(READ_AHEAD_QUEUE_SIZE), r -> {
+                Thread thread = new Thread(r, "FileByteReader read-ahead");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return readAheadExecutor;
+    }
+
+    /**
+     * positional read of whole buffer, doesn't touch channel position so safe to be called concurrently
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long readPos) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, readPos);
+            if (bytesRead < 0)
+                throw new EOFException();
+            readPos += bytesRead;
+        }
+    }
+
+    private static long fileLength(RandomAccessFile file) {
+        try {
+            return file.length();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,275 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block cache source over seekable gzip file. File is a sequence of gzip members, each member is independently
+ * compressed block of fixed uncompressed size (last one can be shorter), so it is still valid gzip that can be
+ * unpacked with gunzip. Each member header carries extra field with compressed and uncompressed sizes of member,
+ * this allows to build block index once by reading member headers only, without inflating data.
+ * Only blocks being touched are inflated, block cache keeps recently used ones.
+ * Such files are produced with {@link #pack(File, File, int)}
+ */
+public class GzipBlockSource implements BlockCache.Source {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_CM_DEFLATE = 8;
+    private static final int GZIP_FLG_FEXTRA = 4;
+    private static final int GZIP_OS_UNKNOWN = 255;
+    // fixed part of header + XLEN
+    private static final int HEADER_FIXED_SIZE = 12;
+    // extra subfield 'R','B': compressed member size, uncompressed length of this block and nominal block size
+    private static final byte SUBFIELD_SI1 = 'R';
+    private static final byte SUBFIELD_SI2 = 'B';
+    private static final int SUBFIELD_DATA_SIZE = 12;
+    private static final int SUBFIELD_SIZE = 4 + SUBFIELD_DATA_SIZE;
+    private static final int HEADER_SIZE = HEADER_FIXED_SIZE + SUBFIELD_SIZE;
+    private static final int TRAILER_SIZE = 8;
+
+    // zlib state is expensive to set up, each io thread keeps own inflater that is reset for every block
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final File file;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long[] memberOffsets;
+    private final long length;
+
+    public GzipBlockSource(File file) throws IOException {
+        this.file = file;
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            // build member index from headers
+            long fileSize = channel.size();
+            long[] offsets = new long[16];
+            int count = 0;
+            long length = 0;
+            int blockSize = 0;
+            int lastBlockLength = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = 0;
+            while (offset < fileSize) {
+                header.clear();
+                readFully(offset, header);
+                int memberSize = memberSize(header, offset);
+                int memberBlockLength = header.getInt(HEADER_FIXED_SIZE + 8);
+                if (count == 0)
+                    blockSize = header.getInt(HEADER_FIXED_SIZE + 12);
+                else if (lastBlockLength != blockSize || header.getInt(HEADER_FIXED_SIZE + 12) != blockSize)
+                    throw new IOException("Only last block can be shorter, block @" + Long.toHexString(offset) + " in " + file);
+                if (blockSize <= 0 || Integer.bitCount(blockSize) != 1)
+                    throw new IOException("Block size shall be power of 2: " + blockSize + " in " + file);
+                if (memberBlockLength <= 0 || memberBlockLength > blockSize)
+                    throw new IOException("Wrong block length " + memberBlockLength + " @" + Long.toHexString(offset) + " in " + file);
+                if (offset + memberSize > fileSize)
+                    throw new IOException("Member @" + Long.toHexString(offset) + " is truncated in " + file);
+                lastBlockLength = memberBlockLength;
+
+                if (count == offsets.length)
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = offset;
+                length += memberBlockLength;
+                offset += memberSize;
+            }
+            if (count == 0)
+                throw new IOException("Empty gzip file " + file);
+
+            // keep offset behind last member as well to know its compressed size
+            this.memberOffsets = Arrays.copyOf(offsets, count + 1);
+            this.memberOffsets[count] = offset;
+            this.blockSize = blockSize;
+            this.length = length;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if file starts with gzip magic
+     */
+    public static boolean isGzip(File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            return is.read() == (GZIP_MAGIC & 0xFF) && is.read() == (GZIP_MAGIC >> 8);
+        }
+    }
+
+    public File file() {
+        return file;
+    }
+
+    /**
+     * @return uncompressed size of block, block cache page size shall be same
+     */
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public int blockCount() {
+        return memberOffsets.length - 1;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void read(long offset, byte[] buffer, int bufferOffset, int size) throws IOException {
+        if (offset < 0 || offset + size > length)
+            throw new EOFException("Read behind the end @" + Long.toHexString(offset) + " of " + file);
+
+        // called concurrently from block cache, so all state is local or per thread
+        Inflater inflater = INFLATER.get();
+        byte[] blockBuffer = null;
+        while (size > 0) {
+            int blockIdx = (int) (offset / blockSize);
+            int blockOffset = (int) (offset - (long) blockIdx * blockSize);
+            int blockLength = (int) Math.min(blockSize, length - (long) blockIdx * blockSize);
+            int chunk = Math.min(size, blockLength - blockOffset);
+            if (blockOffset == 0 && chunk == blockLength) {
+                // whole block is requested (aligned page load), inflate directly into destination
+                inflateBlock(inflater, blockIdx, buffer, bufferOffset, blockLength);
+            } else {
+                if (blockBuffer == null)
+                    blockBuffer = new byte[blockSize];
+                inflateBlock(inflater, blockIdx, blockBuffer, 0, blockLength);
+                System.arraycopy(blockBuffer, blockOffset, buffer, bufferOffset, chunk);
+            }
+            offset += chunk;
+            bufferOffset += chunk;
+            size -= chunk;
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void inflateBlock(Inflater inflater, int blockIdx, byte[] buffer, int bufferOffset, int blockLength) throws IOException {
+        long memberOffset = memberOffsets[blockIdx];
+        int deflatedSize = (int) (memberOffsets[blockIdx + 1] - memberOffset) - HEADER_SIZE - TRAILER_SIZE;
+        // trailer is read along with data to verify result
+        ByteBuffer deflated = ByteBuffer.allocate(deflatedSize + TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(memberOffset + HEADER_SIZE, deflated);
+
+        inflater.reset();
+        inflater.setInput(deflated.array(), 0, deflatedSize);
+        try {
+            int inflated = 0;
+            while (inflated < blockLength && !inflater.finished()) {
+                int res = inflater.inflate(buffer, bufferOffset + inflated, blockLength - inflated);
+                if (res == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                inflated += res;
+            }
+            if (inflated != blockLength)
+                throw new IOException("Block " + blockIdx + " is truncated in " + file);
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + blockIdx + " is broken in " + file, e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer, bufferOffset, blockLength);
+        if (deflated.getInt(deflatedSize) != (int) crc.getValue() || deflated.getInt(deflatedSize + 4) != blockLength)
+            throw new IOException("Block " + blockIdx + " checksum mismatch in " + file);
+    }
+
+    private void readFully(long offset, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, offset);
+            if (bytesRead < 0)
+                throw new EOFException("Unexpected end @" + Long.toHexString(offset) + " of " + file);
+            offset += bytesRead;
+        }
+    }
+
+    private int memberSize(ByteBuffer header, long offset) throws IOException {
+        if ((header.getShort(0) & 0xFFFF) != GZIP_MAGIC || header.get(2) != GZIP_CM_DEFLATE ||
+                header.get(3) != GZIP_FLG_FEXTRA || header.getShort(10) != SUBFIELD_SIZE ||
+                header.get(12) != SUBFIELD_SI1 || header.get(13) != SUBFIELD_SI2 || header.getShort(14) != SUBFIELD_DATA_SIZE) {
+            throw new IOException("Not a block gzip member @" + Long.toHexString(offset) + " of " + file +
+                    ", file has to be packed with GzipBlockSource.pack");
+        }
+        int memberSize = header.getInt(HEADER_FIXED_SIZE + 4);
+        if (memberSize < HEADER_SIZE + TRAILER_SIZE)
+            throw new IOException("Wrong member size " + memberSize + " @" + Long.toHexString(offset) + " of " + file);
+        return memberSize;
+    }
+
+    /**
+     * compresses file into seekable gzip that can be read with this source
+     * @param blockSize uncompressed size of each block, shall be power of 2
+     */
+    public static void pack(File src, File dst, int blockSize) throws IOException {
+        if (blockSize <= 0 || Integer.bitCount(blockSize) != 1)
+            throw new IllegalArgumentException("block size shall be power of 2: " + blockSize);
+        byte[] block = new byte[blockSize];
+        // deflated block can be slightly bigger than source in worst case
+        byte[] deflated = new byte[blockSize + blockSize / 16 + 64];
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        CRC32 crc = new CRC32();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(src));
+             OutputStream os = new BufferedOutputStream(new FileOutputStream(dst))) {
+            int blockLength;
+            while ((blockLength = readBlock(is, block)) > 0) {
+                deflater.reset();
+                deflater.setInput(block, 0, blockLength);
+                deflater.finish();
+                int deflatedSize = 0;
+                while (!deflater.finished()) {
+                    if (deflatedSize == deflated.length)
+                        deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                    deflatedSize += deflater.deflate(deflated, deflatedSize, deflated.length - deflatedSize);
+                }
+                crc.reset();
+                crc.update(block, 0, blockLength);
+
+                header.clear();
+                header.putShort((short) GZIP_MAGIC).put((byte) GZIP_CM_DEFLATE).put((byte) GZIP_FLG_FEXTRA);
+                header.putInt(0).put((byte) 0).put((byte) GZIP_OS_UNKNOWN);
+                header.putShort((short) SUBFIELD_SIZE).put(SUBFIELD_SI1).put(SUBFIELD_SI2).putShort((short) SUBFIELD_DATA_SIZE);
+                header.putInt(HEADER_SIZE + deflatedSize + TRAILER_SIZE).putInt(blockLength).putInt(blockSize);
+                trailer.clear();
+                trailer.putInt((int) crc.getValue()).putInt(blockLength);
+
+                os.write(header.array());
+                os.write(deflated, 0, deflatedSize);
+                os.write(trailer.array());
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int readBlock(InputStream is, byte[] block) throws IOException {
+        int size = 0;
+        while (size < block.length) {
+            int bytesRead = is.read(block, size, block.length - size);
+            if (bytesRead < 0)
+                break;
+            size += bytesRead;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,95 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Block cache source that fetches byte ranges of remote file with HTTP Range requests. Server has to support
+ * partial content (206) responses, e.g. NanoHTTPD SimpleWebServer used on device
+ */
+public class HttpRangeSource implements BlockCache.Source {
+    private static final int TIMEOUT_MS = 30 * 1000;
+
+    private final URL url;
+    private final long length;
+
+    public HttpRangeSource(URL url) throws IOException {
+        this.url = url;
+
+        // learn total length by requesting first byte: Content-Range: bytes 0-0/total
+        HttpURLConnection connection = openRange(0, 1);
+        try {
+            String contentRange = connection.getHeaderField("Content-Range");
+            int slashIdx = contentRange != null ? contentRange.lastIndexOf('/') : -1;
+            if (slashIdx < 0 || contentRange.endsWith("*"))
+                throw new IOException("Unknown length of " + url + ", Content-Range: " + contentRange);
+            this.length = Long.parseLong(contentRange.substring(slashIdx + 1).trim());
+            drainAndClose(connection.getInputStream());
+        } catch (IOException | RuntimeException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    public URL url() {
+        return url;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void read(long offset, byte[] buffer, int bufferOffset, int size) throws IOException {
+        HttpURLConnection connection = openRange(offset, size);
+        try {
+            InputStream is = connection.getInputStream();
+            while (size > 0) {
+                int bytesRead = is.read(buffer, bufferOffset, size);
+                if (bytesRead < 0)
+                    throw new EOFException("Unexpected end of range @" + Long.toHexString(offset) + " of " + url);
+                bufferOffset += bytesRead;
+                size -= bytesRead;
+            }
+            drainAndClose(is);
+        } catch (IOException | RuntimeException e) {
+            // connection is in unknown state, don't return it to keep-alive pool
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * reads body till the end and closes it, this returns connection to keep-alive pool so next range request
+     * reuses socket instead of doing new handshake
+     */
+    private static void drainAndClose(InputStream is) throws IOException {
+        try {
+            byte[] skipBuffer = new byte[512];
+            //noinspection StatementWithEmptyBody
+            while (is.read(skipBuffer) >= 0) {
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private HttpURLConnection openRange(long offset, int size) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setRequestProperty("Range", "bytes=" + offset + "-" + (offset + size - 1));
+        // plain body is expected, compressed one would break byte offsets
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+            connection.disconnect();
+            throw new IOException("Range request is not supported by " + url + ", response code " + responseCode);
+        }
+        return connection;
+    }
+}
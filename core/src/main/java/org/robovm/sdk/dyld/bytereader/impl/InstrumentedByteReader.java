@@ -0,0 +1,240 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructReader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decorator that doesn't change data or positions of wrapped reader but counts its io: bytes read, seeks,
+ * buffer refills, slices created and read size histogram. Everything is reported into aggregate metrics and into
+ * phase. Slice belongs to phase that was active when slice was created, root reader reports into phase active at
+ * moment of read.
+ * Each slice also keeps own counters (without histogram) in plain fields: slices are created in thousands and are
+ * not shared between threads, so they don't get own IoMetrics.
+ */
+public class InstrumentedByteReader extends WrapByteReader {
+    private final IoMetrics aggregate;
+    private final IoMetrics phase;
+    private long observedRefills;
+
+    // counters of this reader/slice only
+    private long bytesRead;
+    private long reads;
+    private long seeks;
+    private long refills;
+    private long slices;
+
+    public InstrumentedByteReader(ByteReader reader, IoMetrics aggregate) {
+        this(reader, aggregate, null);
+    }
+
+    private InstrumentedByteReader(ByteReader reader, IoMetrics aggregate, IoMetrics phase) {
+        super(reader);
+        this.aggregate = aggregate;
+        this.phase = phase;
+        this.observedRefills = reader.refills();
+    }
+
+    /**
+     * @return snapshot of metrics of this reader/slice only, read size histogram is not collected per slice
+     */
+    public IoMetrics metrics() {
+        IoMetrics metrics = new IoMetrics("slice");
+        metrics.add(bytesRead, reads, seeks, refills, slices);
+        return metrics;
+    }
+
+    /**
+     * @return aggregate metrics, shared by all slices
+     */
+    public IoMetrics aggregate() {
+        return aggregate;
+    }
+
+    @Override
+    protected void sanityRead(int size) {
+        // io is accounted in overridden methods, once it is completed
+    }
+
+    @Override
+    public void get(byte[] bytes) {
+        wrappedReader.get(bytes);
+        onRead(bytes.length);
+    }
+
+    @Override
+    public void get(byte[] bytes, int offset, int size) {
+        wrappedReader.get(bytes, offset, size);
+        onRead(size);
+    }
+
+    @Override
+    public ByteBuffer readBytes(int size) {
+        ByteBuffer buffer = wrappedReader.readBytes(size);
+        onRead(size);
+        return buffer;
+    }
+
+    @Override
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        T res = wrappedReader.readStruct(structReader, object);
+        onRead(structReader.objectSize());
+        return res;
+    }
+
+    @Override
+    public void readInt32s(int[] dst, int offset, int count) {
+        wrappedReader.readInt32s(dst, offset, count);
+        onRead(count * 4L);
+    }
+
+    @Override
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        wrappedReader.readUnsignedInt32s(dst, offset, count);
+        onRead(count * 4L);
+    }
+
+    @Override
+    public void readLongs(long[] dst, int offset, int count) {
+        wrappedReader.readLongs(dst, offset, count);
+        onRead(count * 8L);
+    }
+
+    @Override
+    public byte readByte() {
+        byte b = wrappedReader.readByte();
+        onRead(1);
+        return b;
+    }
+
+    @Override
+    public char getChar() {
+        char c = wrappedReader.getChar();
+        onRead(2);
+        return c;
+    }
+
+    @Override
+    public short readShort() {
+        short s = wrappedReader.readShort();
+        onRead(2);
+        return s;
+    }
+
+    @Override
+    public int readInt32() {
+        int i = wrappedReader.readInt32();
+        onRead(4);
+        return i;
+    }
+
+    @Override
+    public long readLong() {
+        long l = wrappedReader.readLong();
+        onRead(8);
+        return l;
+    }
+
+    @Override
+    public float getFloat() {
+        float f = wrappedReader.getFloat();
+        onRead(4);
+        return f;
+    }
+
+    @Override
+    public double getDouble() {
+        double d = wrappedReader.getDouble();
+        onRead(8);
+        return d;
+    }
+
+    @Override
+    public String readStringZ() {
+        long startPos = wrappedReader.position();
+        String s = wrappedReader.readStringZ();
+        onRead(wrappedReader.position() - startPos);
+        return s;
+    }
+
+    @Override
+    public long refills() {
+        return wrappedReader.refills();
+    }
+
+    @Override
+    public ByteReader slice() {
+        return onSlice(wrappedReader.slice());
+    }
+
+    @Override
+    public ByteReader slice(long sliceLimit) {
+        return onSlice(wrappedReader.slice(sliceLimit));
+    }
+
+    @Override
+    public ByteReader sliceAt(long offset) {
+        return onSlice(wrappedReader.sliceAt(offset));
+    }
+
+    @Override
+    public ByteReader sliceAt(long offset, long sliceLimit) {
+        return onSlice(wrappedReader.sliceAt(offset, sliceLimit));
+    }
+
+    @Override
+    public void setPosition(long offset) {
+        wrappedReader.setPosition(offset);
+        seeks += 1;
+        aggregate.onSeek();
+        IoMetrics phase = phase();
+        if (phase != null)
+            phase.onSeek();
+    }
+
+    @Override
+    public long position() {
+        return wrappedReader.position();
+    }
+
+    @Override
+    public void limit(long size) {
+        wrappedReader.limit(size);
+    }
+
+    @Override
+    public long limit() {
+        return wrappedReader.limit();
+    }
+
+    private IoMetrics phase() {
+        return phase != null ? phase : aggregate.currentPhase();
+    }
+
+    private void onRead(long size) {
+        long refills = wrappedReader.refills();
+        long newRefills = refills - observedRefills;
+        observedRefills = refills;
+
+        bytesRead += size;
+        reads += 1;
+        this.refills += newRefills;
+        aggregate.onRead(size);
+        aggregate.onRefills(newRefills);
+        IoMetrics phase = phase();
+        if (phase != null) {
+            phase.onRead(size);
+            phase.onRefills(newRefills);
+        }
+    }
+
+    private ByteReader onSlice(ByteReader slice) {
+        slices += 1;
+        aggregate.onSlice();
+        IoMetrics phase = phase();
+        if (phase != null)
+            phase.onSlice();
+        return new InstrumentedByteReader(slice, aggregate, phase);
+    }
+}
@@ -0,0 +1,161 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * I/O counters collected by InstrumentedByteReader. There is one root (aggregate) metrics object that also keeps
+ * per phase metrics. Counters are thread safe.
+ */
+public class IoMetrics {
+    /**
+     * read size histogram buckets: 0 - empty reads, N - reads of [2^(N-1), 2^N) bytes, last one collects all bigger
+     */
+    public static final int HISTOGRAM_BUCKETS = 18;
+
+    private final String name;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder seeks = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder slices = new LongAdder();
+    private final LongAdder[] readSizes = new LongAdder[HISTOGRAM_BUCKETS];
+
+    // phases, used only in root metrics
+    private final Map<String, IoMetrics> phases = new LinkedHashMap<>();
+    private final ThreadLocal<IoMetrics> currentPhase = new ThreadLocal<>();
+
+    public IoMetrics(String name) {
+        this.name = name;
+        for (int idx = 0; idx < readSizes.length; idx++)
+            readSizes[idx] = new LongAdder();
+    }
+
+    /**
+     * returns metrics of phase, creates it if missing
+     */
+    public IoMetrics phase(String phaseName) {
+        synchronized (phases) {
+            IoMetrics phase = phases.get(phaseName);
+            if (phase == null) {
+                phase = new IoMetrics(phaseName);
+                phases.put(phaseName, phase);
+            }
+            return phase;
+        }
+    }
+
+    /**
+     * marks that all following io of calling thread belongs to phase
+     */
+    public void enterPhase(String phaseName) {
+        currentPhase.set(phaseName != null ? phase(phaseName) : null);
+    }
+
+    /**
+     * @return metrics of phase calling thread is in, or null
+     */
+    public IoMetrics currentPhase() {
+        return currentPhase.get();
+    }
+
+    public List<IoMetrics> phases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases.values());
+        }
+    }
+
+    void onRead(long size) {
+        reads.increment();
+        bytesRead.add(size);
+        readSizes[histogramBucket(size)].increment();
+    }
+
+    void onSeek() {
+        seeks.increment();
+    }
+
+    void onRefills(long count) {
+        if (count != 0)
+            refills.add(count);
+    }
+
+    void onSlice() {
+        slices.increment();
+    }
+
+    /**
+     * adds counters collected elsewhere, read size histogram is not changed
+     */
+    void add(long bytesRead, long reads, long seeks, long refills, long slices) {
+        this.bytesRead.add(bytesRead);
+        this.reads.add(reads);
+        this.seeks.add(seeks);
+        this.refills.add(refills);
+        this.slices.add(slices);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long reads() {
+        return reads.sum();
+    }
+
+    public long seeks() {
+        return seeks.sum();
+    }
+
+    public long refills() {
+        return refills.sum();
+    }
+
+    public long slices() {
+        return slices.sum();
+    }
+
+    public long readSizeHistogram(int bucket) {
+        return readSizes[bucket].sum();
+    }
+
+    public static int histogramBucket(long size) {
+        return Math.min(64 - Long.numberOfLeadingZeros(size), HISTOGRAM_BUCKETS - 1);
+    }
+
+    /**
+     * @return human readable report, including phases
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this).append('\n');
+        for (IoMetrics phase : phases())
+            sb.append("  ").append(phase).append('\n');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name).append(": bytes=").append(bytesRead()).append(", reads=").append(reads())
+                .append(", seeks=").append(seeks()).append(", refills=").append(refills())
+                .append(", slices=").append(slices()).append(", sizes={");
+        String separator = "";
+        for (int idx = 0; idx < HISTOGRAM_BUCKETS; idx++) {
+            long count = readSizeHistogram(idx);
+            if (count == 0)
+                continue;
+            sb.append(separator).append(idx == 0 ? 0 : 1L << (idx - 1)).append(idx == HISTOGRAM_BUCKETS - 1 ? "+:" : ":")
+                    .append(count);
+            separator = ", ";
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -6,6 +6,9 @@ import java.util.Arrays;
 
 /**
  * Reader that uses address map and implements virtual addresses withing flat reader
+ * Mapping table is kept as primitive arrays and bounds of active region are cached, so reads inside one region
+ * are just offset arithmetic without lookup
+ * Each slice works over own slice of wrapped reader, so slices don't share position and can be read independently
  */
 public class MappedByteReader extends WrapByteReader {
 
@@ -21,58 +24,124 @@ public class MappedByteReader extends WrapByteReader {
         }
     }
 
-    private final MappingEntry[] mappingEntries;
-    private MappingEntry activeMappingEntry;
+    /**
+     * mapping table, sorted by start, end is exclusive. shared between slices
+     */
+    private static class MappingTable {
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] targets;
+
+        private MappingTable(MappingEntry[] entries) {
+            MappingEntry[] sorted = Arrays.copyOf(entries, entries.length);
+            Arrays.sort(sorted, (o1, o2) -> Long.compare(o1.startPos, o2.startPos));
+            starts = new long[sorted.length];
+            ends = new long[sorted.length];
+            targets = new long[sorted.length];
+            for (int idx = 0; idx < sorted.length; idx++) {
+                starts[idx] = sorted[idx].startPos;
+                ends[idx] = sorted[idx].endPos + 1;
+                targets[idx] = sorted[idx].targetStartPos;
+            }
+        }
+
+        /**
+         * @return index of region that contains address or -1 if there is no one
+         */
+        private int findRegion(long addr) {
+            // use binary search
+            int left = 0;
+            int right = starts.length - 1;
+            while (right >= left) {
+                int middle = (left + right) >>> 1;
+                if (addr < starts[middle]) {
+                    right = middle - 1;
+                } else if (addr >= ends[middle]) {
+                    left = middle + 1;
+                } else {
+                    return middle;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    private final MappingTable mappingTable;
     private long mappedPosition;
     private final long mappingStartOffset;
     private long mappingLimit;
 
+    // bounds of active region, empty range if there is no active one
+    private long activeStart;
+    private long activeEnd;
+    private long activeTarget;
+
     public MappedByteReader(ByteReader reader, MappingEntry[] entries) {
         super(reader);
-        this.mappingEntries = Arrays.copyOf(entries, entries.length);
-        Arrays.sort(mappingEntries, (o1, o2) -> {
-            long d = o1.startPos - o2.startPos;
-            return d < 0 ? -1 : (d > 0 ? 1 : 0);
-        });
+        this.mappingTable = new MappingTable(entries);
         this.mappingStartOffset = 0;
-        this.mappingLimit = entries[entries.length - 1].endPos + 1;
-        this.setPosition(entries[0].startPos);
+        this.mappingLimit = mappingTable.ends[mappingTable.ends.length - 1];
+        this.setPosition(mappingTable.starts[0]);
+    }
+
+    private MappedByteReader(ByteReader wrappedReader, MappingTable mappingTable, long startOffset, long limit) {
+        this(wrappedReader, mappingTable, startOffset, limit, 0);
     }
 
-    private MappedByteReader(ByteReader wrappedReader, MappingEntry[] mappingEntries, long startOffset, long limit) {
+    private MappedByteReader(ByteReader wrappedReader, MappingTable mappingTable, long startOffset, long limit, long position) {
         super(wrappedReader);
-        this.mappingEntries = mappingEntries;
+        this.mappingTable = mappingTable;
         this.mappingStartOffset = startOffset;
         this.mappingLimit = limit;
-        this.setPosition(0);
+        this.setPosition(position);
     }
 
 
     @Override
     protected void sanityRead(int size) {
-        // after previous read position could be after mapped section
-        activeMappingEntry = findRegion(mappedPosition);
-        if (activeMappingEntry == null)
-            throw new IllegalArgumentException("there is no region to read addr @" + Long.toHexString(mappedPosition));
+        long pos = mappedPosition;
+        if (pos < activeStart || pos + size > activeEnd) {
+            // after previous read position could be after mapped section, move to region that follows
+            if (pos < activeStart || pos >= activeEnd) {
+                if (!activateRegion(pos))
+                    throw new IllegalArgumentException("there is no region to read addr @" + Long.toHexString(pos));
+                super.setPosition(pos - activeStart + activeTarget);
+            }
 
-        // check for cross-boundary read
-        if (mappedPosition + size > activeMappingEntry.endPos)
-            throw new IllegalArgumentException("cross boundary read at addr @" + Long.toHexString(mappedPosition));
+            // check for cross-boundary read
+            if (pos + size > activeEnd)
+                throw new IllegalArgumentException("cross boundary read at addr @" + Long.toHexString(pos));
+        }
 
         // assume that read will be successful and move move pointer
-        mappedPosition += size;
+        mappedPosition = pos + size;
+    }
+
+    /**
+     * @return reader over same mapping with own position and own slice of wrapped reader, e.g. for other thread
+     */
+    public MappedByteReader duplicate() {
+        return new MappedByteReader(wrappedReader.sliceAt(0), mappingTable, mappingStartOffset, mappingLimit, position());
+    }
+
+    /**
+     * @return file reader this mapping reads from
+     */
+    public ByteReader fileReader() {
+        return wrappedReader;
     }
 
     @Override
     public ByteReader slice() {
-        return new MappedByteReader(wrappedReader, mappingEntries, mappedPosition, remaining());
+        return new MappedByteReader(wrappedReader.sliceAt(0), mappingTable, mappedPosition, remaining());
     }
 
     @Override
     public ByteReader slice(long sliceLimit) {
         if (position() + sliceLimit > remaining())
             throw new IllegalArgumentException();
-        return new MappedByteReader(wrappedReader, mappingEntries, mappedPosition, sliceLimit);
+        return new MappedByteReader(wrappedReader.sliceAt(0), mappingTable, mappedPosition, sliceLimit);
     }
 
     @Override
@@ -81,16 +150,16 @@ public class MappedByteReader extends WrapByteReader {
             throw new IllegalArgumentException();
         if (offset > limit())
             throw new IllegalArgumentException();
-        return new MappedByteReader(wrappedReader, mappingEntries, mappingStartOffset + offset, limit() - offset);
+        return new MappedByteReader(wrappedReader.sliceAt(0), mappingTable, mappingStartOffset + offset, limit() - offset);
     }
 
     @Override
     public ByteReader sliceAt(long offset, long sliceLimit) {
         if (offset < 0)
             throw new IllegalArgumentException();
-        if (offset + sliceLimit > remaining())
+        if (sliceLimit < 0 || offset + sliceLimit > limit())
             throw new IllegalArgumentException();
-        return new MappedByteReader(wrappedReader, mappingEntries, mappingStartOffset + offset, sliceLimit);
+        return new MappedByteReader(wrappedReader.sliceAt(0), mappingTable, mappingStartOffset + offset, sliceLimit);
     }
 
     @Override
@@ -98,12 +167,12 @@ public class MappedByteReader extends WrapByteReader {
         if (pos < 0 || pos > mappingLimit)
             throw new IllegalArgumentException();
 
-        activeMappingEntry = findRegion(mappingStartOffset + pos);
-        if (activeMappingEntry == null)
+        long addr = mappingStartOffset + pos;
+        if ((addr < activeStart || addr >= activeEnd) && !activateRegion(addr))
             throw new IllegalArgumentException("there is no region to read addr @" + Long.toHexString(pos));
 
-        mappedPosition = mappingStartOffset + pos;
-        super.setPosition((mappedPosition - activeMappingEntry.startPos) + activeMappingEntry.targetStartPos);
+        mappedPosition = addr;
+        super.setPosition(addr - activeStart + activeTarget);
     }
 
 
@@ -124,29 +193,45 @@ public class MappedByteReader extends WrapByteReader {
         return mappingLimit;
     }
 
-    private MappingEntry findRegion(long addr) {
-        if (activeMappingEntry != null && isAddrInRegion(addr, activeMappingEntry))
-            return activeMappingEntry;
-
-        // use binary search
-        int left = 0;
-        int right = mappingEntries.length - 1;
-        while (right >= left) {
-            int middle = (left + right) / 2;
-            MappingEntry r = mappingEntries[middle];
-            if (addr < r.startPos) {
-                right = middle - 1;
-            } else if (addr > r.endPos) {
-                left = middle + 1;
-            } else {
-                return r;
-            }
-        }
+    /**
+     * translates range of mapped addresses into position in wrapped reader. Allows to slice wrapped reader and
+     * read whole block from it without per read translation
+     * @param offset of range, in position space of this reader
+     * @param size of range
+     * @return position of range in wrapped reader
+     */
+    public long translate(long offset, long size) {
+        long addr = mappingStartOffset + offset;
+        int regionIdx = mappingTable.findRegion(addr);
+        if (regionIdx < 0)
+            throw new IllegalArgumentException("there is no region to read addr @" + Long.toHexString(addr));
+        if (addr + size > mappingTable.ends[regionIdx])
+            throw new IllegalArgumentException("cross boundary range at addr @" + Long.toHexString(addr));
+        return addr - mappingTable.starts[regionIdx] + mappingTable.targets[regionIdx];
+    }
 
-        return null;
+    @Override
+    public void prefetch(long offset, long size) {
+        // range can span several regions, prefetch each part at its own target
+        long addr = mappingStartOffset + offset;
+        long end = addr + size;
+        while (addr < end) {
+            int regionIdx = mappingTable.findRegion(addr);
+            if (regionIdx < 0)
+                return;
+            long chunkEnd = Math.min(end, mappingTable.ends[regionIdx]);
+            wrappedReader.prefetch(addr - mappingTable.starts[regionIdx] + mappingTable.targets[regionIdx], chunkEnd - addr);
+            addr = chunkEnd;
+        }
     }
 
-    private boolean isAddrInRegion(long addr, MappingEntry activeBlock) {
-        return addr >= activeBlock.startPos && addr < activeBlock.endPos;
+    private boolean activateRegion(long addr) {
+        int regionIdx = mappingTable.findRegion(addr);
+        if (regionIdx < 0)
+            return false;
+        activeStart = mappingTable.starts[regionIdx];
+        activeEnd = mappingTable.ends[regionIdx];
+        activeTarget = mappingTable.targets[regionIdx];
+        return true;
     }
 }
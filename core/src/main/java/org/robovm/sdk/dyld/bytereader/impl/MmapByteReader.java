@@ -0,0 +1,350 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reader that memory maps file instead of reading it through file api. As single mapped buffer is limited to 2GB
+ * file is mapped as set of windows. Each window overlaps next one for WINDOW_OVERLAP bytes so any primitive read
+ * is always served by single window.
+ * Windows are mapped lazily on first access and shared between all slices of reader.
+ */
+public class MmapByteReader extends ByteReader {
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final int WINDOW_OVERLAP = 64 * 1024;
+
+    /**
+     * mapped windows, shared between slices
+     */
+    private static class Windows {
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final long fileLength;
+        private final AtomicReferenceArray<MappedByteBuffer> buffers;
+
+        private Windows(RandomAccessFile file) throws IOException {
+            this.file = file;
+            this.channel = file.getChannel();
+            this.fileLength = channel.size();
+            this.buffers = new AtomicReferenceArray<>((int) ((fileLength + WINDOW_SIZE - 1) >> WINDOW_SHIFT));
+        }
+
+        private MappedByteBuffer window(int idx) {
+            MappedByteBuffer buffer = buffers.get(idx);
+            if (buffer == null) {
+                synchronized (this) {
+                    buffer = buffers.get(idx);
+                    if (buffer == null) {
+                        long start = (long) idx << WINDOW_SHIFT;
+                        long size = Math.min(fileLength - start, WINDOW_SIZE + WINDOW_OVERLAP);
+                        try {
+                            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        buffers.set(idx, buffer);
+                    }
+                }
+            }
+            return buffer;
+        }
+    }
+
+    private final Windows windows;
+    // view of last used window, ordered with reader byte order
+    private ByteBuffer activeWindow;
+    private int activeWindowIdx = -1;
+    private long position;
+    private long limit;
+    private final long fileStartOffset;
+
+    public MmapByteReader(File file) throws IOException {
+        this(new RandomAccessFile(file, "r"));
+    }
+
+    public MmapByteReader(RandomAccessFile file) throws IOException {
+        this.windows = new Windows(file);
+        this.limit = windows.fileLength;
+        this.fileStartOffset = 0;
+    }
+
+    private MmapByteReader(Windows windows, ByteOrder byteOrder, long limit, long fileStartOffset) {
+        this.windows = windows;
+        this.byteOrder = byteOrder;
+        this.limit = limit;
+        this.fileStartOffset = fileStartOffset;
+    }
+
+    public void close() throws IOException {
+        windows.file.close();
+    }
+
+    @Override
+    public MmapByteReader slice() {
+        return new MmapByteReader(windows, byteOrder, limit - position, fileStartOffset + position);
+    }
+
+    @Override
+    public MmapByteReader slice(long sliceLimit) {
+        if (sliceLimit > limit - position)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new MmapByteReader(windows, byteOrder, sliceLimit, fileStartOffset + position);
+    }
+
+    @Override
+    public MmapByteReader sliceAt(long offset) {
+        if (offset < 0 || offset >= limit)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new MmapByteReader(windows, byteOrder, limit - offset, fileStartOffset + offset);
+    }
+
+    @Override
+    public MmapByteReader sliceAt(long offset, long sliceLimit) {
+        if (offset < 0 || sliceLimit < 0 || offset + sliceLimit > limit)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new MmapByteReader(windows, byteOrder, sliceLimit, fileStartOffset + offset);
+    }
+
+    @Override
+    public void get(byte[] bytes) {
+        get(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void get(byte[] bytes, int offset, int size) {
+        sanityReadSize(size);
+        long readPos = fileStartOffset + position;
+        position += size;
+        while (size > 0) {
+            // bulk read can cross window boundary, split it
+            ByteBuffer buffer = windows.window((int) (readPos >> WINDOW_SHIFT)).duplicate();
+            int windowOffset = (int) (readPos & (WINDOW_SIZE - 1));
+            int chunk = Math.min(size, buffer.limit() - windowOffset);
+            buffer.position(windowOffset);
+            buffer.get(bytes, offset, chunk);
+            readPos += chunk;
+            offset += chunk;
+            size -= chunk;
+        }
+    }
+
+    @Override
+    public byte readByte() {
+        sanityReadSize(1);
+        long readPos = fileStartOffset + position;
+        position += 1;
+        return window(readPos).get(windowOffset(readPos));
+    }
+
+    @Override
+    public char getChar() {
+        sanityReadSize(2);
+        long readPos = fileStartOffset + position;
+        position += 2;
+        return window(readPos).getChar(windowOffset(readPos));
+    }
+
+    @Override
+    public short readShort() {
+        sanityReadSize(2);
+        long readPos = fileStartOffset + position;
+        position += 2;
+        return window(readPos).getShort(windowOffset(readPos));
+    }
+
+    @Override
+    public int readInt32() {
+        sanityReadSize(4);
+        long readPos = fileStartOffset + position;
+        position += 4;
+        return window(readPos).getInt(windowOffset(readPos));
+    }
+
+    @Override
+    public long readLong() {
+        sanityReadSize(8);
+        long readPos = fileStartOffset + position;
+        position += 8;
+        return window(readPos).getLong(windowOffset(readPos));
+    }
+
+    @Override
+    public float getFloat() {
+        return Float.intBitsToFloat(readInt32());
+    }
+
+    @Override
+    public double getDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public ByteBuffer readBytes(int size) {
+        sanityReadSize(size);
+        long readPos = fileStartOffset + position;
+        ByteBuffer window = window(readPos);
+        int windowOffset = windowOffset(readPos);
+        if (windowOffset + size > window.limit()) {
+            // crosses window boundary, copy
+            return super.readBytes(size);
+        }
+
+        position += size;
+        ByteBuffer buffer = window.asReadOnlyBuffer();
+        buffer.limit(windowOffset + size);
+        buffer.position(windowOffset);
+        return buffer.order(byteOrder);
+    }
+
+    @Override
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        int size = structReader.objectSize();
+        sanityReadSize(size);
+        long readPos = fileStartOffset + position;
+        ByteBuffer window = window(readPos);
+        int windowOffset = windowOffset(readPos);
+        if (windowOffset + size > window.limit()) {
+            // crosses window boundary, decode from copy
+            return super.readStruct(structReader, object);
+        }
+
+        position += size;
+        return structReader.decode(window, windowOffset, object);
+    }
+
+    @Override
+    public void readInt32s(int[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        while (count > 0) {
+            // windows overlap, so at least one value is always in window
+            long readPos = fileStartOffset + position;
+            ByteBuffer window = window(readPos);
+            int windowOffset = windowOffset(readPos);
+            int chunk = Math.min(count, (window.limit() - windowOffset) / 4);
+            ByteBuffer view = window.duplicate();
+            view.position(windowOffset);
+            view.order(byteOrder).asIntBuffer().get(dst, offset, chunk);
+            position += chunk * 4L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        while (count > 0) {
+            // windows overlap, so at least one value is always in window
+            long readPos = fileStartOffset + position;
+            ByteBuffer window = window(readPos);
+            int windowOffset = windowOffset(readPos);
+            int chunk = Math.min(count, (window.limit() - windowOffset) / 4);
+            for (int idx = 0; idx < chunk; idx++)
+                dst[offset + idx] = window.getInt(windowOffset + idx * 4) & 0xFFFFFFFFL;
+            position += chunk * 4L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public void readLongs(long[] dst, int offset, int count) {
+        sanityReadSize(count * 8L);
+        while (count > 0) {
+            // windows overlap, so at least one value is always in window
+            long readPos = fileStartOffset + position;
+            ByteBuffer window = window(readPos);
+            int windowOffset = windowOffset(readPos);
+            int chunk = Math.min(count, (window.limit() - windowOffset) / 8);
+            ByteBuffer view = window.duplicate();
+            view.position(windowOffset);
+            view.order(byteOrder).asLongBuffer().get(dst, offset, chunk);
+            position += chunk * 8L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public String readStringZ() {
+        sanityReadSize(1);
+        long readPos = fileStartOffset + position;
+        ByteBuffer window = window(readPos);
+        int windowOffset = windowOffset(readPos);
+
+        // scan current window, but not behind the limit
+        int scanEnd = (int) Math.min(window.limit(), windowOffset + limit - position);
+        int zeroIdx = indexOfZero(window, windowOffset, scanEnd);
+        if (zeroIdx < 0) {
+            // string crosses window boundary, rare case
+            return super.readStringZ();
+        }
+
+        byte[] bytes = new byte[zeroIdx - windowOffset];
+        get(bytes);
+        position += 1;
+        return decodeString(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void order(ByteOrder order) {
+        // byte order is applied to window view once, primitive reads decode in it without per call check
+        this.byteOrder = order;
+        if (activeWindow != null)
+            activeWindow.order(order);
+    }
+
+    @Override
+    public void setPosition(long offset) {
+        if (offset < 0 || offset > limit)
+            throw new IllegalArgumentException();
+        this.position = offset;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void limit(long size) {
+        if (size < 0 || size > limit)
+            throw new IllegalArgumentException();
+        limit = size;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    private void sanityReadSize(long size) {
+        if (position + size > limit)
+            throw new BufferUnderflowException();
+    }
+
+    private ByteBuffer window(long readPos) {
+        int windowIdx = (int) (readPos >> WINDOW_SHIFT);
+        if (windowIdx != activeWindowIdx) {
+            activeWindow = windows.window(windowIdx).duplicate().order(byteOrder);
+            activeWindowIdx = windowIdx;
+        }
+        return activeWindow;
+    }
+
+    private static int windowOffset(long readPos) {
+        return (int) (readPos & (WINDOW_SIZE - 1));
+    }
+}
@@ -0,0 +1,298 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructReader;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reader over any source that is accessible only through block cache (e.g. remote file). All reads are served from
+ * cached pages, slices share the cache and point to cached page as own read buffer.
+ */
+public class PagedByteReader extends ByteReader {
+    private final BlockCache blockCache;
+    private long position;
+    private long limit;
+    private final long sourceStartOffset;
+
+    // buffering stuff
+    private byte readBuffer[];
+    private long readBufferPos;
+    private ByteBuffer readByteBuffer;
+    private long refills;
+
+    public PagedByteReader(BlockCache blockCache) {
+        this.blockCache = blockCache;
+        this.limit = blockCache.length();
+        this.sourceStartOffset = 0;
+    }
+
+    private PagedByteReader(BlockCache blockCache, ByteOrder byteOrder, long limit, long sourceStartOffset) {
+        this.blockCache = blockCache;
+        this.byteOrder = byteOrder;
+        this.limit = limit;
+        this.sourceStartOffset = sourceStartOffset;
+    }
+
+    public BlockCache blockCache() {
+        return blockCache;
+    }
+
+    @Override
+    public long refills() {
+        return refills;
+    }
+
+    @Override
+    public PagedByteReader slice() {
+        return new PagedByteReader(blockCache, byteOrder, limit - position, sourceStartOffset + position);
+    }
+
+    @Override
+    public PagedByteReader slice(long sliceLimit) {
+        if (sliceLimit > limit - position)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new PagedByteReader(blockCache, byteOrder, sliceLimit, sourceStartOffset + position);
+    }
+
+    @Override
+    public PagedByteReader sliceAt(long offset) {
+        if (offset < 0 || offset >= limit)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new PagedByteReader(blockCache, byteOrder, limit - offset, sourceStartOffset + offset);
+    }
+
+    @Override
+    public PagedByteReader sliceAt(long offset, long sliceLimit) {
+        if (offset < 0 || sliceLimit < 0 || offset + sliceLimit > limit)
+            throw new RuntimeException("Slicing behind the limit!");
+        return new PagedByteReader(blockCache, byteOrder, sliceLimit, sourceStartOffset + offset);
+    }
+
+    @Override
+    public void get(byte[] bytes) {
+        get(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void get(byte[] bytes, int offset, int size) {
+        sanityReadSize(size);
+        try {
+            blockCache.read(sourceStartOffset + position, bytes, offset, size);
+            position += size;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte readByte() {
+        int readBufferOffset = prepareRead(1);
+        position += 1;
+        return readBuffer[readBufferOffset];
+    }
+
+    @Override
+    public char getChar() {
+        int readBufferOffset = prepareRead(2);
+        position += 2;
+        return readByteBuffer.getChar(readBufferOffset);
+    }
+
+    @Override
+    public short readShort() {
+        int readBufferOffset = prepareRead(2);
+        position += 2;
+        return readByteBuffer.getShort(readBufferOffset);
+    }
+
+    @Override
+    public int readInt32() {
+        int readBufferOffset = prepareRead(4);
+        position += 4;
+        return readByteBuffer.getInt(readBufferOffset);
+    }
+
+    @Override
+    public long readLong() {
+        int readBufferOffset = prepareRead(8);
+        position += 8;
+        return readByteBuffer.getLong(readBufferOffset);
+    }
+
+    @Override
+    public float getFloat() {
+        return Float.intBitsToFloat(readInt32());
+    }
+
+    @Override
+    public double getDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public ByteBuffer readBytes(int size) {
+        // cached pages are immutable so can be returned as view
+        int readBufferOffset = prepareRead(size);
+        position += size;
+        return ByteBuffer.wrap(readBuffer, readBufferOffset, size).asReadOnlyBuffer().order(byteOrder);
+    }
+
+    @Override
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        int size = structReader.objectSize();
+        int readBufferOffset = prepareRead(size);
+        position += size;
+        return structReader.decode(readByteBuffer, readBufferOffset, object);
+    }
+
+    @Override
+    public void readInt32s(int[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        while (count > 0) {
+            // decode what is in current page, next one is picked for the rest
+            int readBufferOffset = prepareRead(4);
+            int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 4);
+            for (int idx = 0; idx < chunk; idx++)
+                dst[offset + idx] = readByteBuffer.getInt(readBufferOffset + idx * 4);
+            position += chunk * 4L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        sanityReadSize(count * 4L);
+        while (count > 0) {
+            // decode what is in current page, next one is picked for the rest
+            int readBufferOffset = prepareRead(4);
+            int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 4);
+            for (int idx = 0; idx < chunk; idx++)
+                dst[offset + idx] = readByteBuffer.getInt(readBufferOffset + idx * 4) & 0xFFFFFFFFL;
+            position += chunk * 4L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public void readLongs(long[] dst, int offset, int count) {
+        sanityReadSize(count * 8L);
+        while (count > 0) {
+            // decode what is in current page, next one is picked for the rest
+            int readBufferOffset = prepareRead(8);
+            int chunk = Math.min(count, (readBuffer.length - readBufferOffset) / 8);
+            for (int idx = 0; idx < chunk; idx++)
+                dst[offset + idx] = readByteBuffer.getLong(readBufferOffset + idx * 8);
+            position += chunk * 8L;
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    @Override
+    public String readStringZ() {
+        int readBufferOffset = prepareRead(1);
+
+        // scan what is available in page, but not behind the limit
+        int scanEnd = (int) Math.min(readBuffer.length, readBufferOffset + limit - position);
+        int zeroIdx = indexOfZero(readByteBuffer, readBufferOffset, scanEnd);
+        if (zeroIdx >= 0) {
+            position += zeroIdx - readBufferOffset + 1;
+            return decodeString(readBuffer, readBufferOffset, zeroIdx - readBufferOffset);
+        }
+
+        // string crosses page boundary, rare case
+        return super.readStringZ();
+    }
+
+    @Override
+    public void prefetch(long offset, long size) {
+        if (offset < 0 || offset >= limit)
+            return;
+        try {
+            blockCache.prefetch(sourceStartOffset + offset, Math.min(size, limit - offset));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void order(ByteOrder order) {
+        this.byteOrder = order;
+        if (readByteBuffer != null)
+            readByteBuffer.order(order);
+    }
+
+    @Override
+    public void setPosition(long offset) {
+        if (offset < 0 || offset > limit)
+            throw new IllegalArgumentException();
+        this.position = offset;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void limit(long size) {
+        if (size < 0 || size > limit)
+            throw new IllegalArgumentException();
+        limit = size;
+    }
+
+    @Override
+    public long limit() {
+        return limit;
+    }
+
+    private void sanityReadSize(long size) {
+        if (position + size > limit)
+            throw new BufferUnderflowException();
+    }
+
+    /**
+     * makes sure that data at current position is available in read buffer
+     * @return offset of data in read buffer
+     */
+    private int prepareRead(int readLength) {
+        sanityReadSize(readLength);
+        long readPos = sourceStartOffset + position;
+        if (readBuffer != null) {
+            long readBufferOffset = readPos - readBufferPos;
+            if (readBufferOffset >= 0 && readBufferOffset + readLength <= readBuffer.length)
+                return (int) readBufferOffset;
+        }
+
+        refills += 1;
+        try {
+            int pageShift = blockCache.pageShift();
+            long pageIdx = readPos >> pageShift;
+            int pageOffset = (int) (readPos - (pageIdx << pageShift));
+            byte[] page = blockCache.page(pageIdx);
+            if (pageOffset + readLength <= page.length) {
+                // use page directly as read buffer, no copy
+                readBuffer = page;
+                readBufferPos = pageIdx << pageShift;
+                readByteBuffer = ByteBuffer.wrap(page).order(byteOrder);
+                return pageOffset;
+            }
+
+            // read crosses page boundary, compose it in own buffer
+            readBuffer = new byte[readLength];
+            readBufferPos = readPos;
+            readByteBuffer = ByteBuffer.wrap(readBuffer).order(byteOrder);
+            blockCache.read(readPos, readBuffer, 0, readLength);
+            return 0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
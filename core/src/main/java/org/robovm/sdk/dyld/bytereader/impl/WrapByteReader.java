@@ -1,7 +1,9 @@
 package org.robovm.sdk.dyld.bytereader.impl;
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -30,6 +32,36 @@ public abstract class WrapByteReader extends ByteReader {
         wrappedReader.get(bytes, offset, size);
     }
 
+    @Override
+    public ByteBuffer readBytes(int size) {
+        sanityRead(size);
+        return wrappedReader.readBytes(size);
+    }
+
+    @Override
+    public <T> T readStruct(StructReader<T> structReader, T object) {
+        sanityRead(structReader.objectSize());
+        return wrappedReader.readStruct(structReader, object);
+    }
+
+    @Override
+    public void readInt32s(int[] dst, int offset, int count) {
+        sanityRead(count * 4);
+        wrappedReader.readInt32s(dst, offset, count);
+    }
+
+    @Override
+    public void readUnsignedInt32s(long[] dst, int offset, int count) {
+        sanityRead(count * 4);
+        wrappedReader.readUnsignedInt32s(dst, offset, count);
+    }
+
+    @Override
+    public void readLongs(long[] dst, int offset, int count) {
+        sanityRead(count * 8);
+        wrappedReader.readLongs(dst, offset, count);
+    }
+
     @Override
     public byte readByte() {
         sanityRead(1);
@@ -72,6 +104,19 @@ public abstract class WrapByteReader extends ByteReader {
         return wrappedReader.getDouble();
     }
 
+    @Override
+    public long refills() {
+        return wrappedReader.refills();
+    }
+
+    /**
+     * position space of wrapped reader is same by default, mapping subclasses have to override this
+     */
+    @Override
+    public void prefetch(long offset, long size) {
+        wrappedReader.prefetch(offset, size);
+    }
+
     /**
      * this method has to be overridden in subclass to provide proper mapping
      */
@@ -84,4 +129,9 @@ public abstract class WrapByteReader extends ByteReader {
     public void order(ByteOrder order) {
         wrappedReader.order(order);
     }
+
+    @Override
+    public ByteOrder order() {
+        return wrappedReader.order();
+    }
 }
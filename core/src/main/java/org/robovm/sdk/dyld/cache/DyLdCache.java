@@ -1,81 +1,350 @@
 package org.robovm.sdk.dyld.cache;
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.ReadPlan;
+import org.robovm.sdk.dyld.bytereader.StringPool;
+import org.robovm.sdk.dyld.bytereader.impl.BlockCache;
 import org.robovm.sdk.dyld.bytereader.impl.FileByteReader;
+import org.robovm.sdk.dyld.bytereader.impl.GzipBlockSource;
+import org.robovm.sdk.dyld.bytereader.impl.HttpRangeSource;
+import org.robovm.sdk.dyld.bytereader.impl.InstrumentedByteReader;
+import org.robovm.sdk.dyld.bytereader.impl.IoMetrics;
 import org.robovm.sdk.dyld.bytereader.impl.MappedByteReader;
+import org.robovm.sdk.dyld.bytereader.impl.MmapByteReader;
+import org.robovm.sdk.dyld.bytereader.impl.PagedByteReader;
 import org.robovm.sdk.dyld.cache.structs.DyLdCacheImageInfo;
 import org.robovm.sdk.dyld.cache.structs.DyLdCacheMappingInfo;
 import org.robovm.sdk.dyld.cache.structs.DyldCacheHeader;
 import org.robovm.sdk.dyld.cache.tapi.TapiTbdImageVo;
 import org.robovm.sdk.dyld.cache.tapi.TapiUtils;
+import org.robovm.sdk.dyld.macho.ExportTrieWalker;
+import org.robovm.sdk.dyld.macho.LoadCommandCursor;
 import org.robovm.sdk.dyld.macho.MachOConsts;
 import org.robovm.sdk.dyld.macho.MachOException;
-import org.robovm.sdk.dyld.macho.cmds.DyldInfoCommand;
-import org.robovm.sdk.dyld.macho.cmds.SymtabCommand;
 import org.robovm.sdk.dyld.macho.structs.MachHeader;
 import org.robovm.sdk.dyld.macho.structs.NList;
+import org.robovm.sdk.dyld.macho.structs.NListTable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 
 public class DyLdCache {
 
     private final static String OBJC_IVAR_PREFIX = "_OBJC_IVAR_$";
     private final static String OBJC_METACLASS_PREFIX = "_OBJC_METACLASS_$";
     private final static String OBJC_CLASS_PREFIX = "_OBJC_CLASS_$";
+    private final static byte[] OBJC_IVAR_PREFIX_BYTES = OBJC_IVAR_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private final static byte[] OBJC_CLASS_PREFIX_BYTES = OBJC_CLASS_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    // there is a list of libraries that are not present physicaly as file but their symbols are exported by libSystem
+    private final static String HIDDEN_LIBS_SOURCE = "/usr/lib/libSystem.B.dylib";
+    private final static String[] HIDDEN_LIBS = {"/usr/lib/libc.dylib", "/usr/lib/libdbm.dylib",
+            "/usr/lib/libdl.dylib", "/usr/lib/libinfo.dylib", "/usr/lib/libm.dylib", "/usr/lib/libpoll.dylib",
+            "/usr/lib/libproc.dylib", "/usr/lib/libpthread.dylib", "/usr/lib/librpcsvc.dylib"};
+
+    // default block cache configuration for file reader: 16KB pages, 8MB total, it is small enough for device run
+    private final static int BLOCK_CACHE_PAGE_SIZE = 16 * 1024;
+    private final static int BLOCK_CACHE_PAGES = 512;
+
+    // block cache configuration for remote cache: 64KB pages, 64MB total, up to 1MB per range request
+    private final static int REMOTE_CACHE_PAGE_SIZE = 64 * 1024;
+    private final static int REMOTE_CACHE_PAGES = 1024;
+    private final static int REMOTE_CACHE_COALESCE_PAGES = 16;
+
+    // decompressed block cache for compressed cache file, 16MB total, page size is block size of file
+    private final static int COMPRESSED_CACHE_SIZE = 16 * 1024 * 1024;
+
+    // intra image parallel decoding: nlists per task and minimal trie size to be split into subtrees
+    private final static int PARALLEL_NLIST_CHUNK = 8 * 1024;
+    private final static int PARALLEL_TRIE_MIN_SIZE = 64 * 1024;
+
+    // io phases reported to metrics
+    public final static String IO_PHASE_HEADER = "header";
+    public final static String IO_PHASE_IMAGE_TABLE = "image table";
+    public final static String IO_PHASE_LOAD_COMMANDS = "load commands";
+    public final static String IO_PHASE_SYMTAB = "symtab";
+    public final static String IO_PHASE_STRINGS = "strings";
+    public final static String IO_PHASE_EXPORT_TRIE = "export trie";
+    public final static String IO_PHASE_READ_PLAN = "read plan";
 
     private final ByteReader cacheFileReader;
+    private final BlockCache blockCache;
+    private final IoMetrics ioMetrics;
     private final MappedByteReader cacheVmReader;
     private final DyldCacheHeader cacheHeader;
     private final String arch;
+    private boolean readPlanEnabled;
+    private boolean intraImageParallelEnabled;
+    private int imageParallelism = 1;
+    private boolean reachabilityPruningEnabled;
+    private boolean trieOnlyEnabled;
+    private boolean trieCrossCheckEnabled;
+    // symbol strings of all images are in shared string table, decode each once
+    private final StringPool stringPool = new StringPool();
+    // nlist tables decoded by planning pass keyed by symoff, these are taken by readSymbols to not decode them again
+    private final Map<Long, NListTable> plannedNLists = new ConcurrentHashMap<>();
+    // install name -> image table entry, built on first findImage()
+    private Map<String, DyLdCacheImageInfo> imageIndex;
+    // images parsed by findImage(), these are kept with resolved reexports
+    private final Map<String, TapiTbdImageVo> foundImages = new HashMap<>();
+
+    /**
+     * symtab found during planning pass, its nlists are used to plan string reads
+     */
+    private static class PlannedSymtab {
+        private final long symoff;
+        private final long nsyms;
+        private final long stroff;
+        private final boolean is64b;
+
+        private PlannedSymtab(long symoff, long nsyms, long stroff, boolean is64b) {
+            this.symoff = symoff;
+            this.nsyms = nsyms;
+            this.stroff = stroff;
+            this.is64b = is64b;
+        }
+    }
 
 
+    /**
+     * decodes part of image, used for intra image parallel decoding
+     */
+    private interface PartDecoder {
+        void decode(TapiTbdImageVo part) throws MachOException;
+    }
+
+    /**
+     * passes image to sink with its index in stream
+     */
+    private interface ImageDelivery {
+        void deliver(TapiTbdImageVo image, List<String> names) throws MachOException;
+    }
+
+    /**
+     * receives images read from image table in table order
+     */
+    private interface ImageConsumer {
+        void onImage(TapiTbdImageVo image) throws MachOException;
+    }
+
+    /**
+     * task for fork/join pool that can fail with MachOException
+     */
+    private interface MachOTask<T> {
+        T call() throws MachOException;
+    }
+
     public interface ProgressListener {
         void onImageBeingRead(String image, int imageIdx, int imageCnt);
     }
 
+    /**
+     * receives images from streamImages()
+     */
+    public interface ImageSink {
+        /**
+         * image with resolved reexports is ready to be exported, it is not used by cache after this call
+         * @param image image to export
+         * @param names names image shall be exported as: install name and aliases
+         * @param imageIdx index of image in stream
+         * @param imageCnt amount of images stream will deliver
+         */
+        void onImageReady(TapiTbdImageVo image, List<String> names, int imageIdx, int imageCnt) throws MachOException;
+    }
+
     public DyLdCache(File cache) throws MachOException {
-        try {
-            cacheFileReader = new FileByteReader(new RandomAccessFile(cache, "r"));
-            cacheFileReader.order(ByteOrder.LITTLE_ENDIAN);
-        } catch (IOException e) {
-            throw new MachOException("Failed to open mach-o file", e);
-        }
+        this(openFileReader(cache, false, false));
+    }
+
+    /**
+     * @param cache cache file, it can be seekable gzip produced by {@link GzipBlockSource#pack(File, File, int)},
+     *              in this case only touched blocks are decompressed and memoryMapped is ignored
+     * @param memoryMapped true to memory map plain cache file
+     */
+    public DyLdCache(File cache, boolean memoryMapped) throws MachOException {
+        this(openFileReader(cache, memoryMapped, false));
+    }
+
+    /**
+     * @param cache cache file, it can be seekable gzip produced by {@link GzipBlockSource#pack(File, File, int)},
+     *              in this case only touched blocks are decompressed and other flags are ignored
+     * @param memoryMapped true to memory map plain cache file, readAhead is ignored then
+     * @param readAhead true to read next pages of plain cache file on background io thread while slice is being
+     *                  read sequentially
+     */
+    public DyLdCache(File cache, boolean memoryMapped, boolean readAhead) throws MachOException {
+        this(openFileReader(cache, memoryMapped, readAhead));
+    }
+
+    /**
+     * creates cache over remote file that is accessed with HTTP range requests, only bytes required for parsing
+     * are fetched
+     * @param cacheUrl url of cache file, server has to support Range requests
+     */
+    public DyLdCache(URL cacheUrl) throws MachOException {
+        this(openRemoteReader(cacheUrl));
+    }
+
+    /**
+     * creates cache over any flat reader of cache file (e.g. memory mapped one)
+     * @param cacheFileReader reader that provides access to file data
+     */
+    public DyLdCache(ByteReader cacheFileReader) throws MachOException {
+        this(cacheFileReader, null);
+    }
+
+    /**
+     * creates cache that counts all its io into metrics
+     * @param cacheFileReader reader that provides access to file data
+     * @param ioMetrics aggregate metrics to report io to, per phase metrics are attached to it, null to disable
+     */
+    public DyLdCache(ByteReader cacheFileReader, IoMetrics ioMetrics) throws MachOException {
+        if (cacheFileReader instanceof FileByteReader)
+            this.blockCache = ((FileByteReader) cacheFileReader).blockCache();
+        else if (cacheFileReader instanceof PagedByteReader)
+            this.blockCache = ((PagedByteReader) cacheFileReader).blockCache();
+        else
+            this.blockCache = null;
+        this.ioMetrics = ioMetrics;
+        // VM reader wraps file one, so all VM reads are counted as well
+        this.cacheFileReader = ioMetrics != null ? new InstrumentedByteReader(cacheFileReader, ioMetrics) : cacheFileReader;
+        this.cacheFileReader.order(ByteOrder.LITTLE_ENDIAN);
+        enterIoPhase(IO_PHASE_HEADER);
 
         // read header
-        cacheHeader = new DyldCacheHeader(cacheFileReader);
+        cacheHeader = new DyldCacheHeader(this.cacheFileReader);
         if (!cacheHeader.getMagic().startsWith("dyld_v1"))
             throw new MachOException("Broken cache header magic: " + cacheHeader.getMagic());
         arch = cacheHeader.getMagic().substring(cacheHeader.getMagic().lastIndexOf(' ') + 1);
 
         // get VM mapped reader
         cacheVmReader = createVmReader();
+
+        // planning pays off only for sources with expensive misses (remote or compressed), for local file it
+        // just walks load commands and nlists twice
+        readPlanEnabled = cacheFileReader instanceof PagedByteReader;
     }
 
-    public Map<String, TapiTbdImageVo>  readImages(ProgressListener listener) throws MachOException {
-        ByteReader.ArrayReader<DyLdCacheImageInfo> imagesReader = new ByteReader.ArrayReader<>(cacheFileReader, cacheHeader.getImagesOffset(),
-                (int)cacheHeader.getImagesCount(), DyLdCacheImageInfo.OBJECT_READER(),
-                true);
+    /**
+     * @return block cache used by file reader or null if reader is not cached, allows to check cache hit/miss stats
+     */
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
 
-        // move through images now
-        Map<String, TapiTbdImageVo> images = new LinkedHashMap<>();
-        int idx = -1; // -1 as it being incremented in begining of the loop not end
-        for (DyLdCacheImageInfo image : imagesReader) {
-            idx += 1;
-            TapiTbdImageVo vo = processImage(image);
-            if (vo == null)
-                continue;
+    /**
+     * enables planning pass: before images are decoded all byte ranges they need are collected, sorted and
+     * prefetched into block cache in file order, images are processed in batches that fit the cache.
+     * Has effect only if file reader has block cache, enabled by default for remote and compressed caches
+     */
+    public void setReadPlanEnabled(boolean readPlanEnabled) {
+        this.readPlanEnabled = readPlanEnabled;
+    }
+
+    public boolean isReadPlanEnabled() {
+        return readPlanEnabled && blockCache != null;
+    }
 
-            // add it to map
-            images.put(vo.getInstallName(), vo);
+    /**
+     * enables splitting of work inside large images: index ranges of nlist table and root subtrees of export trie
+     * are decoded as fork/join tasks in common pool, results are merged in original order so output is the same.
+     * Disabled by default
+     */
+    public void setIntraImageParallelEnabled(boolean intraImageParallelEnabled) {
+        this.intraImageParallelEnabled = intraImageParallelEnabled;
+    }
 
-            // update progress
-            if (listener != null)
-                listener.onImageBeingRead(vo.getInstallName(), idx , (int) cacheHeader.getImagesCount());
-        }
+    public boolean isIntraImageParallelEnabled() {
+        return intraImageParallelEnabled;
+    }
+
+    /**
+     * enables pre-pass over load commands that limits reading to images that are public or are reexported by public
+     * ones through private images. Rest of private images are not exported so their symbols are not decoded and
+     * these are missing in readImages() result. Disabled by default
+     */
+    public void setReachabilityPruningEnabled(boolean reachabilityPruningEnabled) {
+        this.reachabilityPruningEnabled = reachabilityPruningEnabled;
+    }
+
+    public boolean isReachabilityPruningEnabled() {
+        return reachabilityPruningEnabled;
+    }
+
+    /**
+     * enables mode where all exports come from export trie (LC_DYLD_INFO_ONLY) and LC_SYMTAB slice of cache nlist
+     * table is not read. Weak definitions are picked by EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION, objc classes and ivars
+     * by name prefix same as for symtab ones. Images without export trie fall back to symtab. Disabled by default
+     */
+    public void setTrieOnlyEnabled(boolean trieOnlyEnabled) {
+        this.trieOnlyEnabled = trieOnlyEnabled;
+    }
+
+    public boolean isTrieOnlyEnabled() {
+        return trieOnlyEnabled;
+    }
+
+    /**
+     * in trie only mode also reads symtab of each image and fails if exports found in trie differ from ones found
+     * by default symtab + trie scan. For checking cache compatibility, it is slower than default mode
+     */
+    public void setTrieCrossCheckEnabled(boolean trieCrossCheckEnabled) {
+        this.trieCrossCheckEnabled = trieCrossCheckEnabled;
+    }
+
+    public boolean isTrieCrossCheckEnabled() {
+        return trieCrossCheckEnabled;
+    }
+
+    /**
+     * @return true if symtab is not needed for exports
+     */
+    private boolean isSymtabSkipped() {
+        return trieOnlyEnabled && !trieCrossCheckEnabled;
+    }
+
+    /**
+     * sets amount of images to be processed in parallel by readImages in own fork/join pool. Each image task gets own
+     * file and VM readers, results and progress callbacks are delivered in image table order regardless of
+     * completion order. 1 (default) processes images one by one in calling thread
+     */
+    public void setImageParallelism(int imageParallelism) {
+        if (imageParallelism < 1)
+            throw new IllegalArgumentException("parallelism shall be positive: " + imageParallelism);
+        this.imageParallelism = imageParallelism;
+    }
+
+    public int getImageParallelism() {
+        return imageParallelism;
+    }
+
+    /**
+     * @return pool of decoded symbol strings, allows to check hit/miss stats
+     */
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * @return io metrics cache was created with or null
+     */
+    public IoMetrics getIoMetrics() {
+        return ioMetrics;
+    }
+
+    public Map<String, TapiTbdImageVo>  readImages(ProgressListener listener) throws MachOException {
+        Map<String, TapiTbdImageVo> images = new LinkedHashMap<>();
+        readImageTable(tableImages(), listener, vo -> images.put(vo.getInstallName(), vo));
 
         // all images has been read, resolve now dylib reexports
         for (TapiTbdImageVo image: images.values()) {
@@ -87,54 +356,409 @@ public class DyLdCache {
         // e.g. libz.1.dylib <- libz.dylib
         Map<String, TapiTbdImageVo>  imagesWithoutVersions = new HashMap<>();
         for (Map.Entry<String, TapiTbdImageVo> e : images.entrySet()) {
-            String imageName = e.getKey();
-            if (!imageName.endsWith(".dylib") || !TapiUtils.isPublicLocation(imageName))
-                continue;
+            String alias = versionlessAlias(e.getKey());
+            if (alias != null)
+                imagesWithoutVersions.put(alias, e.getValue());
+        }
+        images.putAll(imagesWithoutVersions);
 
-            imageName = new File(imageName).getName();
-            String[] chunks = imageName.split("\\.");
-            if (chunks.length < 3) {
-                // only name and ext
-                continue;
+        // there is a list of libraries that are not present physicaly as file but their symbols are exported by libSystem
+        // such as pthreads, make alias for these cases as well
+        for (String hidden : HIDDEN_LIBS) {
+            if (!images.containsKey(hidden)) {
+                images.put(hidden, images.get(HIDDEN_LIBS_SOURCE));
+            }
+        }
+
+        return images;
+    }
+
+    /**
+     * reads images and passes each public one to sink as soon as all images it reexports are read, so it can be
+     * exported while rest of cache is being parsed. Images are delivered with same content and under same names
+     * (including versionless and hidden lib aliases) as readImages() produces, but without holding all of them.
+     * libSystem is delivered last as it is also exported as hidden libs which are known only at the end.
+     * Load commands are read in advance to know which images reexport private dylibs, so these are released once
+     * merged into all of them
+     */
+    public void streamImages(ProgressListener listener, ImageSink sink) throws MachOException {
+        DyLdCacheImageInfo[] imageInfos = tableImages();
+        StreamState state = new StreamState(imageInfos);
+        // all public images except bundles are delivered
+        int imageCnt = 0;
+        for (String installName : getImageIndex().keySet()) {
+            if (TapiUtils.isPublicLocation(installName) && !installName.contains(".bundle/"))
+                imageCnt += 1;
+        }
+        int expectedCnt = imageCnt;
+        int[] deliveredCnt = {0};
+        ImageDelivery delivery = (image, names) -> sink.onImageReady(image, names, deliveredCnt[0]++, expectedCnt);
+
+        readImageTable(imageInfos, listener, vo -> {
+            String installName = vo.getInstallName();
+            state.readNames.add(installName);
+            if (!TapiUtils.isPublicLocation(installName)) {
+                state.privateImages.put(installName, vo);
+                // nothing reexports it, it will never be merged
+                state.releaseIfUnreferenced(installName);
+            } else if (installName.equals(HIDDEN_LIBS_SOURCE)) {
+                state.hiddenLibsSource = vo;
+            } else {
+                state.pending.add(vo);
+            }
+            deliverReadyImages(state, delivery, false);
+        });
+
+        // everything is read, images still pending reexport missing one, this fails same way as readImages
+        deliverReadyImages(state, delivery, true);
+
+        TapiTbdImageVo hiddenLibsSource = state.hiddenLibsSource;
+        if (hiddenLibsSource != null) {
+            resolveReexports(hiddenLibsSource, state.privateImages, state.readNames::contains, new HashSet<>());
+            List<String> names = exportNames(hiddenLibsSource, state.aliases);
+            for (String hidden : HIDDEN_LIBS) {
+                if (!state.readNames.contains(hidden) && !state.aliases.contains(hidden))
+                    names.add(hidden);
             }
+            delivery.deliver(hiddenLibsSource, names);
+        }
+    }
+
+    /**
+     * images held by streamImages(). Public images are held only until delivered, private ones only while image that
+     * reexports them (as read from load commands in advance) can still be merged
+     */
+    private final class StreamState {
+        /** install names of all images read, public reexports are only checked for presence */
+        final Set<String> readNames = new HashSet<>();
+        final Map<String, TapiTbdImageVo> privateImages = new HashMap<>();
+        final List<TapiTbdImageVo> pending = new ArrayList<>();
+        final Set<String> aliases = new HashSet<>();
+        TapiTbdImageVo hiddenLibsSource;
+
+        /** private dylibs reexported by each image, as it is in load commands, resolving rewrites image reexports */
+        private final Map<String, List<String>> privateReexports = new HashMap<>();
+        /** amount of images reexporting private dylib that are not delivered or released yet */
+        private final Map<String, Integer> references = new HashMap<>();
 
-            // check chunks between idx 0 and last, these shall be numeric
-            // e.g. libz.1.2.8.tbd > ["libz", "1", "2", "8", "tbd"], checking "1", "2", "8"
-            // also cover symbol case, e.g. libSystem.B.dylib
-            boolean isAllNumeric = true;
-            boolean isAllAlpha = true;
-            for (idx = 1; idx < chunks.length - 1; idx ++) {
-                isAllNumeric &= TapiUtils.isStringCharsInRange(chunks[idx], '0', '9');
-                isAllAlpha &= TapiUtils.isStringCharsInRange(chunks[idx], 'A', 'C');
+        StreamState(DyLdCacheImageInfo[] imageInfos) throws MachOException {
+            enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+            for (DyLdCacheImageInfo imageInfo : imageInfos) {
+                String imageName = cacheFileReader.readStringZ(imageInfo.getPathFileOffset());
+                if (imageName.contains(".bundle/"))
+                    continue;
+                List<String> libs = new ArrayList<>();
+                for (String lib : readReexports(imageInfo)) {
+                    if (!TapiUtils.isPublicLocation(lib)) {
+                        libs.add(lib);
+                        references.merge(lib, 1, Integer::sum);
+                    }
+                }
+                privateReexports.put(imageName, libs);
             }
+        }
+
+        /**
+         * image will not be merged anymore (delivered or released), its private reexports lose reference
+         */
+        void done(String installName) {
+            List<String> libs = privateReexports.remove(installName);
+            if (libs == null)
+                return;
+            for (String lib : libs) {
+                references.computeIfPresent(lib, (k, v) -> v > 1 ? v - 1 : null);
+                releaseIfUnreferenced(lib);
+            }
+        }
 
-            if (!isAllNumeric && !isAllAlpha)
+        void releaseIfUnreferenced(String installName) {
+            if (!references.containsKey(installName) && privateImages.remove(installName) != null)
+                done(installName);
+        }
+    }
+
+    /**
+     * delivers pending images which all reexported images (and reexports of private ones) are read
+     * @param force deliver all pending, fails if reexported image is missing
+     */
+    private void deliverReadyImages(StreamState state, ImageDelivery delivery, boolean force) throws MachOException {
+        for (Iterator<TapiTbdImageVo> it = state.pending.iterator(); it.hasNext(); ) {
+            TapiTbdImageVo image = it.next();
+            if (!force && !isReexportClosureRead(image, state, new HashSet<>()))
                 continue;
 
-            // name is subject for alias
-            imageName = new File(e.getKey()).getParent() + "/" + chunks[0] + ".dylib";
-            imagesWithoutVersions.put(imageName, e.getValue());
+            it.remove();
+            resolveReexports(image, state.privateImages, state.readNames::contains, new HashSet<>());
+            delivery.deliver(image, exportNames(image, state.aliases));
+            state.done(image.getInstallName());
         }
-        images.putAll(imagesWithoutVersions);
+    }
 
-        // there is a list of libraries that are not present physicaly as file but their symbols are exported by libSystem
-        // such as pthreads, make alias for these cases as well
-        String hiddenLibs[] = new String[]{"/usr/lib/libc.dylib", "/usr/lib/libdbm.dylib",
-                "/usr/lib/libdl.dylib", "/usr/lib/libinfo.dylib", "/usr/lib/libm.dylib", "/usr/lib/libpoll.dylib",
-                "/usr/lib/libproc.dylib", "/usr/lib/libpthread.dylib", "/usr/lib/librpcsvc.dylib"};
-        for (String hidden : hiddenLibs) {
-            if (!images.containsKey(hidden)) {
-                images.put(hidden, images.get("/usr/lib/libSystem.B.dylib"));
+    private boolean isReexportClosureRead(TapiTbdImageVo image, StreamState state, Set<TapiTbdImageVo> visited) {
+        if (!visited.add(image))
+            return true;
+        for (String lib : image.getReexports()) {
+            if (!state.readNames.contains(lib))
+                return false;
+            // public ones are kept as reexports, their content is not needed
+            if (!TapiUtils.isPublicLocation(lib) && !isReexportClosureRead(state.privateImages.get(lib), state, visited))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return install name and versionless alias of image, alias overrides image with same name as in readImages
+     */
+    private List<String> exportNames(TapiTbdImageVo image, Set<String> aliases) {
+        List<String> names = new ArrayList<>();
+        if (!aliases.contains(image.getInstallName()))
+            names.add(image.getInstallName());
+        String alias = versionlessAlias(image.getInstallName());
+        if (alias != null) {
+            names.add(alias);
+            aliases.add(alias);
+        }
+        return names;
+    }
+
+    /**
+     * @return install names of all images in cache (including bundles), in image table order
+     */
+    public Set<String> getInstallNames() {
+        return Collections.unmodifiableSet(getImageIndex().keySet());
+    }
+
+    /**
+     * parses single image on demand, along with private images it reexports, without reading rest of cache.
+     * Result is same as readImages() returns for this install name (without aliases) and is cached
+     * @return image with resolved reexports or null if there is no such image in cache (or it is a bundle)
+     */
+    public TapiTbdImageVo findImage(String installName) throws MachOException {
+        TapiTbdImageVo image;
+        try {
+            image = parseIndexedImage(installName, new HashMap<>());
+        } finally {
+            // strings are referenced by parsed images now, don't keep pool growing between lookups
+            stringPool.clear();
+        }
+        if (image == null)
+            return null;
+        // resolving is repeated for cached image, it is no-op once it succeeded
+        Map<String, DyLdCacheImageInfo> index = getImageIndex();
+        resolveReexports(image, foundImages, index::containsKey, new HashSet<>());
+        return image;
+    }
+
+    /**
+     * parses image and its private reexports that were not parsed yet into foundImages, reexports are not resolved
+     * @param parsing images parsed during this lookup, to stop on reexport cycles
+     */
+    private TapiTbdImageVo parseIndexedImage(String installName, Map<String, TapiTbdImageVo> parsing) throws MachOException {
+        TapiTbdImageVo image = foundImages.get(installName);
+        if (image != null || parsing.containsKey(installName))
+            return image;
+        DyLdCacheImageInfo imageInfo = getImageIndex().get(installName);
+        if (imageInfo == null)
+            return null;
+        image = processImage(imageInfo, cacheVmReader);
+        if (image == null)
+            return null;
+        parsing.put(installName, image);
+
+        // public ones are kept as reexports, their content is not needed
+        for (String lib : image.getReexports()) {
+            if (!TapiUtils.isPublicLocation(lib))
+                parseIndexedImage(lib, parsing);
+        }
+        foundImages.put(installName, image);
+        return image;
+    }
+
+    private Map<String, DyLdCacheImageInfo> getImageIndex() {
+        if (imageIndex == null) {
+            // only image table and path strings are read
+            DyLdCacheImageInfo[] imageInfos = readImageInfos();
+            Map<String, DyLdCacheImageInfo> index = new LinkedHashMap<>();
+            for (DyLdCacheImageInfo imageInfo : imageInfos)
+                index.put(cacheFileReader.readStringZ(imageInfo.getPathFileOffset()), imageInfo);
+            imageIndex = index;
+        }
+        return imageIndex;
+    }
+
+    private DyLdCacheImageInfo[] readImageInfos() {
+        enterIoPhase(IO_PHASE_IMAGE_TABLE);
+        cacheFileReader.setPosition(cacheHeader.getImagesOffset());
+        return DyLdCacheImageInfo.readAll(cacheFileReader, (int) cacheHeader.getImagesCount());
+    }
+
+    /**
+     * @return images to be read from image table, only ones reachable from public images if pruning is enabled
+     */
+    private DyLdCacheImageInfo[] tableImages() throws MachOException {
+        DyLdCacheImageInfo[] imageInfos = readImageInfos();
+        if (reachabilityPruningEnabled)
+            imageInfos = reachableImages(imageInfos);
+        return imageInfos;
+    }
+
+    /**
+     * reads images in table order and passes them to consumer, with read plan these are processed in
+     * batches which data was prefetched
+     */
+    private void readImageTable(DyLdCacheImageInfo[] imageInfos, ProgressListener listener, ImageConsumer consumer)
+            throws MachOException {
+        ForkJoinPool pool = imageParallelism > 1 ? new ForkJoinPool(imageParallelism) : null;
+        // parsed images wait in window until consumed, so slow consumer (e.g. blocked on full export queue)
+        // stops parsing instead of results piling up
+        int window = 2 * imageParallelism;
+        try {
+            int idx = 0;
+            while (idx < imageInfos.length) {
+                int batchStart = idx;
+                int batchEnd = isReadPlanEnabled() ? prefetchImages(imageInfos, idx) : imageInfos.length;
+
+                // in parallel mode keep window of images ahead of consumer submitted, each task with own readers
+                // as these keep position
+                Deque<ForkJoinTask<TapiTbdImageVo>> tasks = new ArrayDeque<>();
+                int submitIdx = batchStart;
+
+                // results are consumed in image order, so map order and progress are the same as in sequential mode
+                for (idx = batchStart; idx < batchEnd; idx++) {
+                    TapiTbdImageVo vo;
+                    if (pool != null) {
+                        for (; submitIdx < batchEnd && submitIdx < idx + window; submitIdx++) {
+                            DyLdCacheImageInfo imageInfo = imageInfos[submitIdx];
+                            MappedByteReader vmReader = cacheVmReader.duplicate();
+                            tasks.add(pool.submit(adaptTask(() -> processImage(imageInfo, vmReader))));
+                        }
+                        vo = joinTask(tasks.poll());
+                    } else {
+                        vo = processImage(imageInfos[idx], cacheVmReader);
+                    }
+                    if (vo == null)
+                        continue;
+
+                    consumer.onImage(vo);
+
+                    // update progress
+                    if (listener != null)
+                        listener.onImageBeingRead(vo.getInstallName(), idx, imageInfos.length);
+                }
             }
+        } finally {
+            if (pool != null)
+                pool.shutdownNow();
+            plannedNLists.clear();
         }
+        // strings are referenced by images now, release pool tables
+        stringPool.clear();
+    }
 
-        return images;
+    /**
+     * pre-pass that reads only load commands: walks LC_REEXPORT_DYLIB graph from public images through private ones
+     * @return images reachable from public ones, in table order
+     */
+    private DyLdCacheImageInfo[] reachableImages(DyLdCacheImageInfo[] imageInfos) throws MachOException {
+        Map<String, Integer> imageIndexes = new HashMap<>();
+        boolean[] reachable = new boolean[imageInfos.length];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int idx = 0; idx < imageInfos.length; idx++) {
+            String imageName = cacheFileReader.readStringZ(imageInfos[idx].getPathFileOffset());
+            // bundles are filtered out anyway
+            if (imageName.contains(".bundle/"))
+                continue;
+            imageIndexes.put(imageName, idx);
+            if (TapiUtils.isPublicLocation(imageName)) {
+                reachable[idx] = true;
+                queue.add(idx);
+            }
+        }
+
+        // public reexports are reachable already, symbols are merged only from private ones
+        enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+        while (!queue.isEmpty()) {
+            for (String lib : readReexports(imageInfos[queue.poll()])) {
+                Integer libIdx = imageIndexes.get(lib);
+                if (libIdx != null && !reachable[libIdx]) {
+                    reachable[libIdx] = true;
+                    queue.add(libIdx);
+                }
+            }
+        }
+
+        List<DyLdCacheImageInfo> result = new ArrayList<>();
+        for (int idx = 0; idx < imageInfos.length; idx++) {
+            if (reachable[idx])
+                result.add(imageInfos[idx]);
+        }
+        return result.toArray(new DyLdCacheImageInfo[0]);
+    }
+
+    /**
+     * @return install names from LC_REEXPORT_DYLIB commands of image
+     */
+    private List<String> readReexports(DyLdCacheImageInfo image) throws MachOException {
+        cacheVmReader.setPosition(image.getAddress());
+        long magic = cacheVmReader.readUnsignedInt32();
+        if (magic != MachOConsts.MAGIC && magic != MachOConsts.MAGIC_64)
+            throw new MachOException("unexpected Mach header MAGIC 0x" + Long.toHexString(magic));
+        MachHeader header = new MachHeader(cacheVmReader, magic == MachOConsts.MAGIC_64);
+
+        List<String> reexports = new ArrayList<>();
+        LoadCommandCursor cursor = readLoadCommands(cacheVmReader.translate(cacheVmReader.position(), header.sizeofcmds()), header);
+        while (cursor.next()) {
+            if (cursor.cmd() == MachOConsts.commands.LC_REEXPORT_DYLIB)
+                reexports.add(cursor.dylib().name());
+        }
+        return reexports;
+    }
+
+    /**
+     * versioned public dylibs are also exported without version identifiers, e.g. libz.1.dylib <- libz.dylib
+     * @return versionless name of image or null if it is not subject for alias
+     */
+    private static String versionlessAlias(String imagePath) {
+        if (!imagePath.endsWith(".dylib") || !TapiUtils.isPublicLocation(imagePath))
+            return null;
+
+        String imageName = new File(imagePath).getName();
+        String[] chunks = imageName.split("\\.");
+        if (chunks.length < 3) {
+            // only name and ext
+            return null;
+        }
+
+        // check chunks between idx 0 and last, these shall be numeric
+        // e.g. libz.1.2.8.tbd > ["libz", "1", "2", "8", "tbd"], checking "1", "2", "8"
+        // also cover symbol case, e.g. libSystem.B.dylib
+        boolean isAllNumeric = true;
+        boolean isAllAlpha = true;
+        for (int idx = 1; idx < chunks.length - 1; idx ++) {
+            isAllNumeric &= TapiUtils.isStringCharsInRange(chunks[idx], '0', '9');
+            isAllAlpha &= TapiUtils.isStringCharsInRange(chunks[idx], 'A', 'C');
+        }
+
+        if (!isAllNumeric && !isAllAlpha)
+            return null;
+
+        // name is subject for alias
+        return new File(imagePath).getParent() + "/" + chunks[0] + ".dylib";
     }
 
     /**
      * routine resolves reexport. all mentioned private dylibs shall be removed and their export symbols shall be added
      */
     private void resolveReexports(TapiTbdImageVo image, Map<String, TapiTbdImageVo> images, Set<TapiTbdImageVo> resolved) {
+        resolveReexports(image, images, images::containsKey, resolved);
+    }
+
+    /**
+     * @param exists checks if reexported public image is present in cache, these are not merged so don't have to be parsed
+     */
+    private void resolveReexports(TapiTbdImageVo image, Map<String, TapiTbdImageVo> images, Predicate<String> exists,
+                                  Set<TapiTbdImageVo> resolved) {
         if (resolved.contains(image))
             return;
         resolved.add(image);
@@ -144,14 +768,17 @@ public class DyLdCache {
         List<String> toRemove = new ArrayList<>();
         List<String> toAdd = new ArrayList<>();
         for (String lib : image.getReexports()) {
+            if (TapiUtils.isPublicLocation(lib)) {
+                if (!exists.test(lib))
+                    throw new RuntimeException("Reexported " + lib + " not found in cache");
+                continue;
+            }
             TapiTbdImageVo reexported = images.get(lib);
             if (reexported == null)
                 throw new RuntimeException("Reexported " + lib + " not found in cache");
-            if (TapiUtils.isPublicLocation(lib))
-                continue;
 
             // resolveReexports for this library as well
-            resolveReexports(reexported, images, resolved);
+            resolveReexports(reexported, images, exists, resolved);
 
             // private lib, copy symbols
             image.getExportedSymbols().addAll(reexported.getExportedSymbols());
@@ -169,8 +796,108 @@ public class DyLdCache {
             image.getReexports().addAll(toAdd);
     }
 
-    private TapiTbdImageVo processImage(DyLdCacheImageInfo image) throws MachOException {
-        String imageName = cacheFileReader.readStringZ((int) image.getPathFileOffset());
+    /**
+     * planning pass: collects byte ranges needed by images starting from first one while these fit half of block
+     * cache and prefetches them in file order. Strings are planned once nlists are in cache.
+     * If single image needs more than cache can keep, prefetching would just evict itself, so it is skipped
+     * @return index of image after last planned one
+     */
+    private int prefetchImages(DyLdCacheImageInfo[] imageInfos, int firstImageIdx) throws MachOException {
+        enterIoPhase(IO_PHASE_READ_PLAN);
+        long budget = (long) blockCache.maxPages() * blockCache.pageSize() / 2;
+        ReadPlan plan = new ReadPlan(blockCache.pageSize());
+        List<PlannedSymtab> symtabs = new ArrayList<>();
+        int idx = firstImageIdx;
+        do {
+            planImage(imageInfos[idx++], plan, symtabs);
+        } while (idx < imageInfos.length && plan.requestedBytes() < budget);
+        long plannedBytes = plan.plannedBytes();
+        if (plannedBytes > budget)
+            return idx;
+        plan.prefetch(cacheFileReader);
+
+        // strings are referenced from nlists, plan page of each string start
+        plan.clear();
+        for (PlannedSymtab symtab : symtabs) {
+            NListTable nlists = readNListTable(symtab.symoff, symtab.nsyms, symtab.is64b);
+            plannedNLists.put(symtab.symoff, nlists);
+            for (int nlistIdx = 0; nlistIdx < nlists.count(); nlistIdx++) {
+                if (isExportCandidate(nlists, nlistIdx))
+                    plan.add(symtab.stroff + nlists.n_strx(nlistIdx), 1);
+            }
+        }
+        if (plannedBytes + plan.plannedBytes() <= 2 * budget)
+            plan.prefetch(cacheFileReader);
+        return idx;
+    }
+
+    /**
+     * adds to plan load commands of image and file ranges they reference
+     */
+    private void planImage(DyLdCacheImageInfo image, ReadPlan plan, List<PlannedSymtab> symtabs) throws MachOException {
+        String imageName = cacheFileReader.readStringZ(image.getPathFileOffset());
+        if (imageName.contains(".bundle/"))
+            return;
+
+        cacheVmReader.setPosition(image.getAddress());
+        long magic = cacheVmReader.readUnsignedInt32();
+        if (magic != MachOConsts.MAGIC && magic != MachOConsts.MAGIC_64)
+            throw new MachOException("unexpected Mach header MAGIC 0x" + Long.toHexString(magic));
+        MachHeader header = new MachHeader(cacheVmReader, magic == MachOConsts.MAGIC_64);
+        long commandsOffset = cacheVmReader.translate(cacheVmReader.position(), header.sizeofcmds());
+        plan.add(commandsOffset, header.sizeofcmds());
+
+        LoadCommandCursor cursor = readLoadCommands(commandsOffset, header);
+        while (cursor.next()) {
+            if (cursor.cmd() == MachOConsts.commands.LC_SYMTAB && !isSymtabSkipped()) {
+                LoadCommandCursor.SymtabView symtab = cursor.symtab();
+                plan.add(symtab.symoff(), symtab.nsyms() * NList.OBJECT_READER(header.is64b()).objectSize());
+                symtabs.add(new PlannedSymtab(symtab.symoff(), symtab.nsyms(), symtab.stroff(), header.is64b()));
+            } else if (cursor.cmd() == MachOConsts.commands.LC_DYLD_INFO_ONLY) {
+                plan.add(cursor.dyldInfo().export_off(), cursor.dyldInfo().export_size());
+            }
+        }
+    }
+
+    /**
+     * @return true if nlist can be exported symbol, e.g. it is not undefined or debug one
+     */
+    private static boolean isExportCandidate(NListTable nlists, int idx) {
+        if (nlists.isTypeUndfined(idx) || nlists.isTypePreboundUndefined(idx))
+            return false;
+        return !nlists.isTypeStab(idx) || nlists.isTypeStabGlobalSymb(idx);
+    }
+
+    /**
+     * @return table decoded by planning pass if there is one, otherwise reads it
+     */
+    private NListTable takeNListTable(long symoff, long nsyms, boolean is64b) {
+        NListTable nlists = plannedNLists.remove(symoff);
+        return nlists != null ? nlists : readNListTable(symoff, nsyms, is64b);
+    }
+
+    private NListTable readNListTable(long symoff, long nsyms, boolean is64b) {
+        long nlistSize = NList.OBJECT_READER(is64b).objectSize();
+        ByteReader nlistReader = cacheFileReader.sliceAt(symoff, nsyms * nlistSize);
+        return NListTable.read(nlistReader, (int) nsyms, is64b);
+    }
+
+    /**
+     * reads whole load commands block of image with single read
+     * @param commandsOffset file offset of block
+     */
+    private LoadCommandCursor readLoadCommands(long commandsOffset, MachHeader header) {
+        ByteBuffer commands = cacheFileReader.sliceAt(commandsOffset, header.sizeofcmds()).readBytes((int) header.sizeofcmds());
+        return new LoadCommandCursor(commands, (int) header.ncmds(), header.is64b());
+    }
+
+    /**
+     * @param vmReader reader to read mach-o header with, it is stateful so each image task gets own one.
+     *                 Other reads are done through slices of file reader as these don't change its state
+     */
+    private TapiTbdImageVo processImage(DyLdCacheImageInfo image, MappedByteReader vmReader) throws MachOException {
+        enterIoPhase(IO_PHASE_IMAGE_TABLE);
+        String imageName = vmReader.fileReader().readStringZ(image.getPathFileOffset());
 
 //        if (!imageName.equals("/System/Library/Frameworks/Foundation.framework/Foundation")
 ////                && !imageName.equals("/System/Library/Frameworks/WebKit.framework/WebKit")
@@ -187,79 +914,146 @@ public class DyLdCache {
         TapiTbdImageVo tbd = new TapiTbdImageVo(arch, imageName);
 
         // reading macho header, pick magic, mach header is located at memory offset
-        cacheVmReader.setPosition(image.getAddress());
-        long magic = cacheVmReader.readUnsignedInt32();
+        enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+        vmReader.setPosition(image.getAddress());
+        long magic = vmReader.readUnsignedInt32();
         if (magic != MachOConsts.MAGIC && magic != MachOConsts.MAGIC_64)
             throw new MachOException("unexpected Mach header MAGIC 0x" + Long.toHexString(magic));
 
         // parse header
-        MachHeader header = new MachHeader(cacheVmReader, magic == MachOConsts.MAGIC_64);
-
-        // read all commands
-        for (int idx = 0; idx < header.ncmds(); idx++) {
-            long pos = cacheVmReader.position();
-            int cmd = (int) cacheVmReader.readUnsignedInt32();
-            int cmdsize = (int) cacheVmReader.readUnsignedInt32();
-            if (cmd == MachOConsts.commands.LC_SYMTAB) {
-                SymtabCommand symtabCommand = new SymtabCommand(cacheVmReader);
-                ByteReader.ObjectReader<NList> nlistObjReader = NList.OBJECT_READER(header.is64b());
-
-                // mach-o header is in VM address space, but strings and symbol objects are in file space, crazy
-                ByteReader stringReader = cacheFileReader.sliceAt((int) symtabCommand.stroff, (int) symtabCommand.strsize);
-                ByteReader nlistReader = cacheFileReader.sliceAt((int) symtabCommand.symoff, (int) (symtabCommand.nsyms * nlistObjReader.objectSize()));
-                ByteReader.ArrayReader<NList> nlistArrayReader = new ByteReader.ArrayReader<>(nlistReader, nlistObjReader);
-                for (NList nlist : nlistArrayReader) {
-                    if (nlist.isTypeUndfined() || nlist.isTypePreboundUndefined())
-                        continue;
-                    if (nlist.isTypeStab() && !nlist.isTypeStabGlobalSymb())
-                        continue;
+        MachHeader header = new MachHeader(vmReader, magic == MachOConsts.MAGIC_64);
 
-                    // get sym name
-                    String sym = stringReader.readStringZ((int) nlist.n_strx());
-                    addSymbolToTbd(sym, tbd, nlist);
-                }
-            } else if (cmd == MachOConsts.commands.LC_UUID) {
-                // read 16 byte uuid
-                byte[] bytes = new byte[16];
-                cacheVmReader.get(bytes);
-                UUID u = UUID.nameUUIDFromBytes(bytes);
-                tbd.setUuid(u.toString());
-            } else if (cmd == MachOConsts.commands.LC_REEXPORT_DYLIB ||
-                    cmd == MachOConsts.commands.LC_ID_DYLIB) {
-                long strOffset = cacheVmReader.readUnsignedInt32();
-                long ts = cacheVmReader.readUnsignedInt32(); // timestamp
-                long currentV = cacheVmReader.readUnsignedInt32();
-                long compatV = cacheVmReader.readUnsignedInt32();
-                String name = cacheVmReader.readStringZ(pos + strOffset);
-                if (cmd == MachOConsts.commands.LC_ID_DYLIB) {
-                    tbd.setCurrentVersion(encodedVersionToStr(currentV));
+        // load commands follow the header, translate whole block into file space once and read it with single read
+        // and visit commands of interest without per command objects
+        LoadCommandCursor cursor = readLoadCommands(
+                vmReader.translate(vmReader.position(), header.sizeofcmds()), header);
+        // in cross-check mode symtab + trie exports are collected separately to compare with trie only ones
+        TapiTbdImageVo symtabTbd = !trieOnlyEnabled ? tbd : trieCrossCheckEnabled ? new TapiTbdImageVo(arch, imageName) : null;
+        boolean[] hasTrie = {false};
+        byte[] uuidBytes = new byte[16];
+        cursor.on(MachOConsts.commands.LC_SYMTAB, c -> {
+                    if (symtabTbd != null)
+                        readSymbols(c.symtab(), header.is64b(), symtabTbd);
+                })
+                .on(MachOConsts.commands.LC_UUID, c -> {
+                    UUID u = UUID.nameUUIDFromBytes(c.uuid().bytes(uuidBytes));
+                    tbd.setUuid(u.toString());
+                })
+                .on(MachOConsts.commands.LC_ID_DYLIB, c -> {
+                    tbd.setCurrentVersion(encodedVersionToStr(c.dylib().current_version()));
+                    long compatV = c.dylib().compatibility_version();
                     if (compatV != 0x10000)
                         tbd.setCompatVersion(encodedVersionToStr(compatV));
-                } else {
-                    tbd.addReexport(name);
-                }
-            } else if (cmd == MachOConsts.commands.LC_DYLD_INFO_ONLY) {
-                DyldInfoCommand dyldInfo = new DyldInfoCommand(cacheVmReader);
-                if (dyldInfo.export_size != 0) {
-                    ByteReader trieReader = cacheFileReader.sliceAt((int) dyldInfo.export_off, dyldInfo.export_size);
-                    parseIndirectSymbFromTrie(trieReader, "", tbd);
+                })
+                .on(MachOConsts.commands.LC_REEXPORT_DYLIB, c -> tbd.addReexport(c.dylib().name()))
+                .on(MachOConsts.commands.LC_DYLD_INFO_ONLY, c -> {
+                    long exportSize = c.dyldInfo().export_size();
+                    if (exportSize != 0) {
+                        hasTrie[0] = true;
+                        enterIoPhase(IO_PHASE_EXPORT_TRIE);
+                        ByteBuffer trie = cacheFileReader.sliceAt(c.dyldInfo().export_off(), exportSize).readBytes((int) exportSize);
+                        enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+                        if (symtabTbd != null)
+                            parseSymbolsFromTrie(trie, symtabTbd, false);
+                        if (trieOnlyEnabled)
+                            parseSymbolsFromTrie(trie, tbd, true);
+                    }
+                });
+        cursor.walk();
+
+        if (trieOnlyEnabled && !hasTrie[0]) {
+            // no LC_DYLD_INFO_ONLY export trie (e.g. image uses LC_DYLD_EXPORTS_TRIE), exports are only in symtab
+            if (symtabTbd != null) {
+                tbd.addAll(symtabTbd);
+            } else {
+                cursor.rewind();
+                while (cursor.next()) {
+                    if (cursor.cmd() == MachOConsts.commands.LC_SYMTAB)
+                        readSymbols(cursor.symtab(), header.is64b(), tbd);
                 }
             }
-
-            cacheVmReader.setPosition(pos + cmdsize);
+        } else if (trieOnlyEnabled && trieCrossCheckEnabled) {
+            crossCheckExports(tbd, symtabTbd);
         }
 
         return tbd;
     }
 
-    private void addSymbolToTbd(String sym, TapiTbdImageVo tbd, NList nlist) {
+    private void readSymbols(LoadCommandCursor.SymtabView symtab, boolean is64b, TapiTbdImageVo tbd) throws MachOException {
+        // mach-o header is in VM address space, but strings and symbol objects are in file space, crazy
+        enterIoPhase(IO_PHASE_SYMTAB);
+        NListTable nlists = takeNListTable(symtab.symoff(), symtab.nsyms(), is64b);
+        if (!isIntraImageParallelEnabled() || nlists.count() < 2 * PARALLEL_NLIST_CHUNK) {
+            enterIoPhase(IO_PHASE_STRINGS);
+            ByteReader stringReader = cacheFileReader.sliceAt(symtab.stroff(), symtab.strsize());
+            enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+            readSymbols(nlists, 0, nlists.count(), symtab.stroff(), stringReader, tbd);
+            return;
+        }
+
+        // split into index ranges, each task gets own string reader slice as readers are not thread safe
+        List<ForkJoinTask<TapiTbdImageVo>> tasks = new ArrayList<>();
+        long stroff = symtab.stroff();
+        for (int from = 0; from < nlists.count(); from += PARALLEL_NLIST_CHUNK) {
+            int taskFrom = from;
+            int taskTo = Math.min(from + PARALLEL_NLIST_CHUNK, nlists.count());
+            enterIoPhase(IO_PHASE_STRINGS);
+            ByteReader stringReader = cacheFileReader.sliceAt(symtab.stroff(), symtab.strsize());
+            tasks.add(forkPart(tbd, part -> readSymbols(nlists, taskFrom, taskTo, stroff, stringReader, part)));
+        }
+        enterIoPhase(IO_PHASE_LOAD_COMMANDS);
+        joinParts(tasks, tbd);
+    }
+
+    private void readSymbols(NListTable nlists, int from, int to, long stroff, ByteReader stringReader, TapiTbdImageVo tbd) {
+        for (int nlistIdx = from; nlistIdx < to; nlistIdx++) {
+            if (!isExportCandidate(nlists, nlistIdx))
+                continue;
+
+            // classify symbol on raw bytes, only name that goes to tbd is decoded
+            long strx = nlists.n_strx(nlistIdx);
+            int first = stringReader.peekUnsignedByte(strx);
+            if (first < 0 || first >= 0x80) {
+                // not ascii, rare case, go through decoded string
+                String sym = stringPool.get(stroff + strx, stringReader, strx);
+                addSymbolToTbd(sym, tbd, nlists.isWeakDefined(nlistIdx));
+            } else if (first == '_') {
+                if (stringReader.startsWith(strx, OBJC_IVAR_PREFIX_BYTES)) {
+                    tbd.addExportedObjcIvar(readSymbolName(stroff, strx + OBJC_IVAR_PREFIX_BYTES.length, stringReader));
+                } else if (stringReader.startsWith(strx, OBJC_CLASS_PREFIX_BYTES)) {
+                    tbd.addExportedObjcClass(readSymbolName(stroff, strx + OBJC_CLASS_PREFIX_BYTES.length, stringReader));
+                } else if (nlists.isWeakDefined(nlistIdx)) {
+                    tbd.addExportedWeakDefined(readSymbolName(stroff, strx, stringReader));
+                } else {
+                    tbd.addExportedSymbol(readSymbolName(stroff, strx, stringReader));
+                }
+            } else if ((first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z')) {
+                // all exported syms shall start with underscope or letter
+                if (nlists.isWeakDefined(nlistIdx))
+                    tbd.addExportedWeakDefined(readSymbolName(stroff, strx, stringReader));
+                else
+                    tbd.addExportedSymbol(readSymbolName(stroff, strx, stringReader));
+            }
+        }
+    }
+
+    /**
+     * decodes symbol name through shared pool
+     * @param stroff file offset of string table
+     * @param strx offset of name in string table, can point inside of symbol string when prefix is stripped
+     */
+    private String readSymbolName(long stroff, long strx, ByteReader stringReader) {
+        return stringPool.get(stroff + strx, stringReader, strx);
+    }
+
+    private void addSymbolToTbd(String sym, TapiTbdImageVo tbd, boolean weakDefined) {
         if (sym != null && sym.length() > 0 && (sym.charAt(0) == '_' || Character.isAlphabetic(sym.charAt(0)))) {
             // all exported syms shall start with underscope
             if (sym.startsWith(OBJC_IVAR_PREFIX)) {
                 tbd.addExportedObjcIvar(sym.substring(OBJC_IVAR_PREFIX.length()));
             } else if (sym.startsWith(OBJC_CLASS_PREFIX)) {
                 tbd.addExportedObjcClass(sym.substring(OBJC_CLASS_PREFIX.length()));
-            } else if (nlist != null && nlist.isWeakDefined()) {
+            } else if (weakDefined) {
                 tbd.addExportedWeakDefined(sym);
             } else {
                 tbd.addExportedSymbol(sym);
@@ -286,63 +1080,144 @@ public class DyLdCache {
         return version;
     }
 
-    private void parseIndirectSymbFromTrie(ByteReader reader, String name, TapiTbdImageVo tbd) {
-        long savedPos;
+    /**
+     * collects symbols from export trie
+     * @param allExports true to collect all exports (trie only mode), otherwise only ones that are not in symtab:
+     *                   reexported and not regular (e.g. absolute) ones
+     */
+    private void parseSymbolsFromTrie(ByteBuffer trie, TapiTbdImageVo tbd, boolean allExports) throws MachOException {
+        ExportTrieWalker walker = new ExportTrieWalker(trie);
+        if (!isIntraImageParallelEnabled() || trie.remaining() < PARALLEL_TRIE_MIN_SIZE) {
+            walkTrieSymbols(walker, tbd, allExports);
+            return;
+        }
+
+        // root subtrees are walked as separate tasks
+        List<ForkJoinTask<TapiTbdImageVo>> tasks = new ArrayList<>();
+        for (ExportTrieWalker subtreeWalker : walker.split()) {
+            tasks.add(forkPart(tbd, part -> walkTrieSymbols(subtreeWalker, part, allExports)));
+        }
+        joinParts(tasks, tbd);
+    }
+
+    private void walkTrieSymbols(ExportTrieWalker walker, TapiTbdImageVo tbd, boolean allExports) throws MachOException {
+        if (allExports) {
+            walker.walk(flags -> true, (symbol, flags) -> addSymbolToTbd(symbol, tbd,
+                    (flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION) != 0));
+            return;
+        }
+        walker.walk(flags ->
+                (flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_KIND_MASK) != MachOConsts.trie.EXPORT_SYMBOL_FLAGS_KIND_REGULAR ||
+                (flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_REEXPORT) != 0,
+                (symbol, flags) -> addSymbolToTbd(symbol, tbd, false));
+    }
+
+    /**
+     * compares exports found in trie only mode with ones found by symtab + trie scan
+     */
+    private static void crossCheckExports(TapiTbdImageVo tbd, TapiTbdImageVo symtabTbd) throws MachOException {
+        for (int idx = 0; idx < TapiTbdImageVo.getExportItemCount(); idx++) {
+            Set<String> trieItems = tbd.getExportItems(idx);
+            Set<String> symtabItems = symtabTbd.getExportItems(idx);
+            // reexported dylibs come from load commands and are collected only once
+            if (trieItems == tbd.getReexports() || trieItems.equals(symtabItems))
+                continue;
+
+            Set<String> missing = new TreeSet<>(symtabItems);
+            missing.removeAll(trieItems);
+            Set<String> extra = new TreeSet<>(trieItems);
+            extra.removeAll(symtabItems);
+            throw new MachOException("Export trie " + TapiTbdImageVo.getExportItemName(idx) + " of " +
+                    tbd.getInstallName() + " differ from symtab ones, missing in trie: " + missing + ", only in trie: " + extra);
+        }
+    }
+
+    /**
+     * starts decoding of part of image in common fork/join pool, part is decoded into own value object
+     */
+    private ForkJoinTask<TapiTbdImageVo> forkPart(TapiTbdImageVo tbd, PartDecoder decoder) {
+        return adaptTask(() -> {
+            TapiTbdImageVo part = new TapiTbdImageVo(arch, tbd.getInstallName());
+            decoder.decode(part);
+            return part;
+        }).fork();
+    }
 
-         // Nodes for a symbol start with a uleb128 that is the length of
-         // the exported symbol information for the string so far.
-        long terminalSize = parseUleb128(reader);
-        savedPos = reader.position();
+    /**
+     * waits for parallel tasks and merges their partial results in task order, so result doesn't depend on
+     * scheduling
+     */
+    private static void joinParts(List<ForkJoinTask<TapiTbdImageVo>> tasks, TapiTbdImageVo tbd) throws MachOException {
+        for (ForkJoinTask<TapiTbdImageVo> task : tasks)
+            tbd.addAll(joinTask(task));
+    }
 
-        if ( terminalSize != 0 ) {
-            // just get flag to check type, if it is reexported than this symbol is external and indirect, add to list
-            long flags = parseUleb128(reader);
-            if ((flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_KIND_MASK) != MachOConsts.trie.EXPORT_SYMBOL_FLAGS_KIND_REGULAR ||
-                    (flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_REEXPORT) != 0) {
-                addSymbolToTbd(name, tbd, null);
+    private static <T> ForkJoinTask<T> adaptTask(MachOTask<T> task) {
+        return ForkJoinTask.adapt(() -> {
+            try {
+                return task.call();
+            } catch (MachOException e) {
+                // it is Throwable, wrap to pass through task, unwrapped in joinTask
+                throw new RuntimeException(e);
             }
+        });
+    }
+
+    private static <T> T joinTask(ForkJoinTask<T> task) throws MachOException {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            // mach-o exceptions of tasks come wrapped
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof MachOException)
+                    throw (MachOException) cause;
+            }
+            throw e;
         }
+    }
 
-        reader.setPosition(savedPos + terminalSize);
+    /**
+     * marks that following io of current thread belongs to phase, slices remember phase they were created in
+     */
+    private void enterIoPhase(String phase) {
+        if (ioMetrics != null)
+            ioMetrics.enterPhase(phase);
+    }
 
-        // After the optional exported symbol information is a byte of
-        // how many edges (0-255) that this node has leaving it,
-        // followed by each edge.
-		byte childrenCount = reader.readByte();
-		for (int i = 0; i < childrenCount; i++) {
-            // Each edge is a zero terminated UTF8 of the addition chars
-            // in the symbol, followed by a uleb128 offset for the node that
-            // edge points to.
-            String s = reader.readStringZ();
-            long offset = parseUleb128(reader);
-            savedPos = reader.position();
-            reader.setPosition(offset);
-            parseIndirectSymbFromTrie(reader, name + s, tbd);
-            reader.setPosition(savedPos);
+    private static ByteReader openFileReader(File cache, boolean memoryMapped, boolean readAhead) throws MachOException {
+        try {
+            if (GzipBlockSource.isGzip(cache))
+                return openCompressedReader(cache);
+            else if (memoryMapped)
+                return new MmapByteReader(cache);
+            else
+                return new FileByteReader(new RandomAccessFile(cache, "r"), BLOCK_CACHE_PAGE_SIZE, BLOCK_CACHE_PAGES, readAhead);
+        } catch (IOException e) {
+            throw new MachOException("Failed to open mach-o file", e);
         }
     }
 
-    private long parseUleb128(ByteReader reader) {
-        long result = 0;
-        int bit = 0;
-        byte p;
-        do {
-            p = reader.readByte();
-            long slice = p & 0x7f;
+    private static ByteReader openCompressedReader(File cache) throws IOException {
+        GzipBlockSource source = new GzipBlockSource(cache);
+        int pages = Math.max(1, COMPRESSED_CACHE_SIZE / source.blockSize());
+        return new PagedByteReader(new BlockCache(source, source.blockSize(), pages));
+    }
 
-            result |= (slice << bit);
-            bit += 7;
-        } while ((p & 0x80) != 0);
-        return result;
+    private static ByteReader openRemoteReader(URL cacheUrl) throws MachOException {
+        try {
+            return new PagedByteReader(new BlockCache(new HttpRangeSource(cacheUrl), REMOTE_CACHE_PAGE_SIZE,
+                    REMOTE_CACHE_PAGES, REMOTE_CACHE_COALESCE_PAGES));
+        } catch (IOException e) {
+            throw new MachOException("Failed to open remote cache " + cacheUrl, e);
+        }
     }
 
     private MappedByteReader createVmReader() {
-        ByteReader.ArrayReader<DyLdCacheMappingInfo> vmMappingReader = new ByteReader.ArrayReader<>(cacheFileReader,
-                cacheHeader.getMappingOffset(), (int)cacheHeader.getMappingCount(),
-                DyLdCacheMappingInfo.OBJECT_READER(), true);
+        cacheFileReader.setPosition(cacheHeader.getMappingOffset());
+        DyLdCacheMappingInfo[] vmMappings = DyLdCacheMappingInfo.readAll(cacheFileReader, (int) cacheHeader.getMappingCount());
         MappedByteReader.MappingEntry vmMappingEntries[] = new MappedByteReader.MappingEntry[(int) cacheHeader.getMappingCount()];
         int idx = 0;
-        for (DyLdCacheMappingInfo mapInfo : vmMappingReader) {
+        for (DyLdCacheMappingInfo mapInfo : vmMappings) {
             vmMappingEntries[idx++] = new MappedByteReader.MappingEntry(mapInfo.getAddress(),
                     mapInfo.getAddress() + mapInfo.getSize() - 1, mapInfo.getFileOffset());
         }
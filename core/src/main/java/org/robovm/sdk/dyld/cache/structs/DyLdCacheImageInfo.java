@@ -1,26 +1,24 @@
 package org.robovm.sdk.dyld.cache.structs;
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
 public class DyLdCacheImageInfo {
+    private static final StructLayout<DyLdCacheImageInfo> LAYOUT = new StructLayout<>(DyLdCacheImageInfo::new);
+    private static final int ADDRESS = LAYOUT.uint64((o, v) -> o.address = v);
+    private static final int MOD_TIME = LAYOUT.uint64((o, v) -> o.modTime = v);
+    private static final int INODE = LAYOUT.uint64((o, v) -> o.inode = v);
+    private static final int PATH_FILE_OFFSET = LAYOUT.uint32((o, v) -> o.pathFileOffset = v);
+    private static final int PAD = LAYOUT.uint32((o, v) -> o.pad = v);
+
     private long address;   //    uint64_t	address;
     private long modTime;   //    uint64_t	modTime;
     private long inode;     //    uint64_t	inode;
     private long pathFileOffset;    //    uint32_t	pathFileOffset;
     private long pad;               //    uint32_t	pad;
 
-    private DyLdCacheImageInfo(ByteReader reader) {
-        read(reader);
-    }
-
-    private DyLdCacheImageInfo read(ByteReader reader) {
-        this.address = reader.readLong();
-        this.modTime = reader.readLong();
-        this.inode = reader.readLong();
-        this.pathFileOffset = reader.readUnsignedInt32();
-        this.pad = reader.readUnsignedInt32();
-
-        return this;
+    private DyLdCacheImageInfo() {
     }
 
     public long getAddress() {
@@ -39,24 +37,18 @@ public class DyLdCacheImageInfo {
         return pathFileOffset;
     }
 
-    private static ByteReader.ObjectReader<DyLdCacheImageInfo> objectReader = new ByteReader.ObjectReader<DyLdCacheImageInfo>() {
-        @Override
-        public Class<DyLdCacheImageInfo> objectClass() {
-            return DyLdCacheImageInfo.class;
-        }
+    private static StructReader<DyLdCacheImageInfo> objectReader = new StructReader<>(DyLdCacheImageInfo.class, LAYOUT);
 
-        @Override
-        public int objectSize() {
-            return 8 + 8 + 8 + 4 + 4;
-        }
-
-        @Override
-        public DyLdCacheImageInfo readObject(ByteReader reader, DyLdCacheImageInfo object) {
-            return object == null ? new DyLdCacheImageInfo(reader) : object.read(reader);
-        }
-    };
-
-    public static ByteReader.ObjectReader<DyLdCacheImageInfo> OBJECT_READER() {
+    public static StructReader<DyLdCacheImageInfo> OBJECT_READER() {
         return objectReader;
     }
+
+    /**
+     * reads whole image table with single bulk read
+     * @param reader positioned at table start
+     * @param count of entries in table
+     */
+    public static DyLdCacheImageInfo[] readAll(ByteReader reader, int count) {
+        return objectReader.readAll(reader, count);
+    }
 }
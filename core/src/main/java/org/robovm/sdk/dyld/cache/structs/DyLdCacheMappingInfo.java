@@ -1,25 +1,28 @@
 package org.robovm.sdk.dyld.cache.structs;
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
 public class DyLdCacheMappingInfo {
+    private static final StructLayout<DyLdCacheMappingInfo> LAYOUT = new StructLayout<>(DyLdCacheMappingInfo::new);
+    private static final int ADDRESS = LAYOUT.uint64((o, v) -> o.address = v);
+    private static final int SIZE = LAYOUT.uint64((o, v) -> o.size = v);
+    private static final int FILE_OFFSET = LAYOUT.uint64((o, v) -> o.fileOffset = v);
+    private static final int MAX_PROT = LAYOUT.uint32((o, v) -> o.maxProt = v);
+    private static final int INIT_PROT = LAYOUT.uint32((o, v) -> o.initProt = v);
+
     private long address;       //    uint64_t	address;
     private long size;          //    uint64_t	size;
     private long fileOffset;    //    uint64_t	fileOffset;
     private long maxProt;       //    uint32_t	maxProt;
     private long initProt;      //    uint32_t	initProt;
 
-    public DyLdCacheMappingInfo(ByteReader reader) {
-        read(reader);
+    private DyLdCacheMappingInfo() {
     }
 
-    private DyLdCacheMappingInfo read(ByteReader reader) {
-        this.address = reader.readLong();
-        this.size = reader.readLong();
-        this.fileOffset = reader.readLong();
-        this.maxProt = reader.readUnsignedInt32();
-        this.initProt = reader.readUnsignedInt32();
-        return this;
+    public DyLdCacheMappingInfo(ByteReader reader) {
+        objectReader.readObject(reader, this);
     }
 
     public long getAddress() {
@@ -35,27 +38,21 @@ public class DyLdCacheMappingInfo {
     }
 
     public static int ITEM_SIZE() {
-        return 8 + 8 + 8 + 4 + 4;
+        return LAYOUT.size();
     }
 
-    private static ByteReader.ObjectReader<DyLdCacheMappingInfo> objectReader = new ByteReader.ObjectReader<DyLdCacheMappingInfo>() {
-        @Override
-        public Class<DyLdCacheMappingInfo> objectClass() {
-            return DyLdCacheMappingInfo.class;
-        }
-
-        @Override
-        public int objectSize() {
-            return 8 + 8 + 8 + 4 + 4;
-        }
+    /**
+     * reads whole mapping table with single bulk read
+     * @param reader positioned at table start
+     * @param count of entries in table
+     */
+    public static DyLdCacheMappingInfo[] readAll(ByteReader reader, int count) {
+        return objectReader.readAll(reader, count);
+    }
 
-        @Override
-        public DyLdCacheMappingInfo readObject(ByteReader reader, DyLdCacheMappingInfo object) {
-            return object == null ? new DyLdCacheMappingInfo(reader) : object.read(reader);
-        }
-    };
+    private static StructReader<DyLdCacheMappingInfo> objectReader = new StructReader<>(DyLdCacheMappingInfo.class, LAYOUT);
 
-    public static ByteReader.ObjectReader<DyLdCacheMappingInfo> OBJECT_READER() {
+    public static StructReader<DyLdCacheMappingInfo> OBJECT_READER() {
         return objectReader;
     }
 }
@@ -1,8 +1,18 @@
 package org.robovm.sdk.dyld.cache.structs;
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
 public class DyldCacheHeader {
+    // struct dyld_cache_header, only fields that are used
+    private static final StructLayout<DyldCacheHeader> LAYOUT = new StructLayout<>(DyldCacheHeader::new);
+    private static final int MAGIC = LAYOUT.chars(16, (o, v) -> o.magic = v);
+    private static final int MAPPING_OFFSET = LAYOUT.uint32((o, v) -> o.mappingOffset = v);
+    private static final int MAPPING_COUNT = LAYOUT.uint32((o, v) -> o.mappingCount = v);
+    private static final int IMAGES_OFFSET = LAYOUT.uint32((o, v) -> o.imagesOffset = v);
+    private static final int IMAGES_COUNT = LAYOUT.uint32((o, v) -> o.imagesCount = v);
+    private static final int DYLD_BASE_ADDRESS = LAYOUT.uint64((o, v) -> o.dyldBaseAddress = v);
 
     private String magic;       //    char        magic[16];              // e.g. "dyld_v0    i386"
     private long mappingOffset; //    uint32_t    mappingOffset;          // file offset to first dyld_cache_mapping_info
@@ -11,16 +21,16 @@ public class DyldCacheHeader {
     private long imagesCount;   //    uint32_t    imagesCount;            // number of dyld_cache_image_info entries
     private long dyldBaseAddress;   //    uint64_t    dyldBaseAddress;        // base address of dyld when cache was built
 
+    private DyldCacheHeader() {
+    }
+
     public DyldCacheHeader(ByteReader reader) {
         // read interested fields
-        magic = reader.readString(16);
-        mappingOffset = reader.readUnsignedInt32();
-        mappingCount = reader.readUnsignedInt32();
-        imagesOffset = reader.readUnsignedInt32();
-        imagesCount = reader.readUnsignedInt32();
-        dyldBaseAddress = reader.readLong();
+        objectReader.readObject(reader, this);
     }
 
+    private static StructReader<DyldCacheHeader> objectReader = new StructReader<>(DyldCacheHeader.class, LAYOUT);
+
     //    uint64_t    codeSignatureOffset;    // file offset of code signature blob
 //    uint64_t    codeSignatureSize;      // size of code signature blob (zero means to end of file)
 //    uint64_t    slideInfoOffset;        // file offset of kernel slid info
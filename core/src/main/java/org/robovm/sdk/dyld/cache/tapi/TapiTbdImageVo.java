@@ -1,6 +1,8 @@
 package org.robovm.sdk.dyld.cache.tapi;
 
+import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 public class TapiTbdImageVo {
@@ -11,14 +13,14 @@ public class TapiTbdImageVo {
     private String currentVersion;
     private String compatVersion;
     private String objcConstraint = "none";
-    private final Set<String> exportedSymbols = new LinkedHashSet<>();
-    private final Set<String> exportedObjcClasses = new LinkedHashSet<>();
-    private final Set<String> exportedObjcIvars = new LinkedHashSet<>();
-    private final Set<String> reexports = new LinkedHashSet<>();
-    private final Set<String> exportedWeakDefined = new LinkedHashSet<>();
+    private Set<String> exportedSymbols = new LinkedHashSet<>();
+    private Set<String> exportedObjcClasses = new LinkedHashSet<>();
+    private Set<String> exportedObjcIvars = new LinkedHashSet<>();
+    private Set<String> reexports = new LinkedHashSet<>();
+    private Set<String> exportedWeakDefined = new LinkedHashSet<>();
 
     // for batch processing
-    private Set exportedItems[] = {exportedSymbols, exportedObjcClasses, exportedObjcIvars, reexports, exportedWeakDefined};
+    private List<Set<String>> exportedItems = exportLists();
     private final static String exportedItemNames[] = {"symbols", "objc-classes", "objc-ivars", "re-exports", "weak-def-symbols"};
 
     public TapiTbdImageVo(String arch, String installName) {
@@ -114,12 +116,39 @@ public class TapiTbdImageVo {
         this.exportedWeakDefined.add(e);
     }
 
+    /**
+     * appends exports of other value object, used to merge partial results of image that was decoded in parallel
+     */
+    public void addAll(TapiTbdImageVo other) {
+        for (int idx = 0; idx < getExportItemCount(); idx++)
+            getExportItems(idx).addAll(other.getExportItems(idx));
+    }
+
+    /**
+     * drops all export lists once image is exported, so memory they take can be reclaimed while value object itself
+     * is still referenced
+     */
+    public void releaseExports() {
+        exportedSymbols = new LinkedHashSet<>();
+        exportedObjcClasses = new LinkedHashSet<>();
+        exportedObjcIvars = new LinkedHashSet<>();
+        reexports = new LinkedHashSet<>();
+        exportedWeakDefined = new LinkedHashSet<>();
+        exportedItems = exportLists();
+    }
+
+    /**
+     * builds list of export lists for batch processing, order shall match exportedItemNames
+     */
+    private List<Set<String>> exportLists() {
+        return Arrays.asList(exportedSymbols, exportedObjcClasses, exportedObjcIvars, reexports, exportedWeakDefined);
+    }
+
     /**
      * returns export list by it index, for batch processing
      */
     public Set<String> getExportItems(int idx) {
-        //noinspection unchecked
-        return exportedItems[idx];
+        return exportedItems.get(idx);
     }
 
     public static int getExportItemCount() {
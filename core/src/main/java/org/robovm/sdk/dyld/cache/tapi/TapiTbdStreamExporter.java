@@ -0,0 +1,114 @@
+package org.robovm.sdk.dyld.cache.tapi;
+
+import org.robovm.sdk.dyld.cache.DyLdCache;
+import org.robovm.sdk.dyld.macho.MachOException;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports images streamed from DyLdCache.streamImages() into yaml files on own thread, so export runs while rest of
+ * cache is being parsed. Images are passed through bounded queue: once it is full parser is blocked till exporter
+ * catches up, so amount of images held in memory is limited. Export lists of image are released once it is written.
+ */
+public class TapiTbdStreamExporter implements DyLdCache.ImageSink {
+    private static final int QUEUE_SIZE = 32;
+    private static final int FINISH_POLL_MS = 100;
+
+    private static class Entry {
+        private final TapiTbdImageVo image;
+        private final List<String> names;
+        private final int imageIdx;
+        private final int imageCnt;
+
+        private Entry(TapiTbdImageVo image, List<String> names, int imageIdx, int imageCnt) {
+            this.image = image;
+            this.names = names;
+            this.imageIdx = imageIdx;
+            this.imageCnt = imageCnt;
+        }
+    }
+
+    // marks end of stream
+    private static final Entry END = new Entry(null, null, 0, 0);
+
+    private final File rootDir;
+    private final List<String> archs;
+    private final TapiTbdYamlExporter.ProgressListener listener;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+    private volatile Throwable error;
+
+    /**
+     * @param listener receives index of image in stream and amount of images stream delivers
+     */
+    public TapiTbdStreamExporter(File rootDir, List<String> archs, TapiTbdYamlExporter.ProgressListener listener) {
+        this.rootDir = rootDir;
+        this.archs = archs;
+        this.listener = listener;
+        this.thread = new Thread(this::run, "TapiTbdStreamExporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void onImageReady(TapiTbdImageVo image, List<String> names, int imageIdx, int imageCnt) throws MachOException {
+        // stop parsing as soon as export has failed
+        if (error != null)
+            throw new MachOException("Export failed", error);
+        try {
+            queue.put(new Entry(image, names, imageIdx, imageCnt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MachOException("Interrupted while waiting for export", e);
+        }
+    }
+
+    /**
+     * waits till all queued images are exported
+     */
+    public void finish() throws IOException, InterruptedException {
+        // exporter thread could be already dead, don't block on full queue then
+        while (thread.isAlive() && !queue.offer(END, FINISH_POLL_MS, TimeUnit.MILLISECONDS)) {
+            // queue is still full, check if exporter is alive and retry
+        }
+        thread.join();
+        if (error != null)
+            throw new IOException("Export failed", error);
+    }
+
+    /**
+     * stops export without waiting for queued images, used when parsing failed
+     */
+    public void abort() throws InterruptedException {
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void run() {
+        try {
+            Yaml yaml = TapiTbdYamlExporter.createYaml();
+            for (Entry entry = queue.take(); entry != END; entry = queue.take()) {
+                for (String imageName : entry.names) {
+                    if (!TapiUtils.isPublicLocation(imageName))
+                        continue;
+                    if (listener != null)
+                        listener.onImageExported(imageName, entry.imageIdx, entry.imageCnt);
+                    TapiTbdYamlExporter.exportImage(yaml, rootDir, imageName, entry.image, archs);
+                }
+                entry.image.releaseExports();
+            }
+        } catch (InterruptedException ignored) {
+            // aborted
+        } catch (Throwable e) {
+            error = e;
+            // unblock producer, it will pick up error on next image
+            queue.clear();
+        }
+    }
+}
@@ -21,14 +21,7 @@ public class TapiTbdYamlExporter {
     }
 
     public static void exportAll(File rootDir, Map<String, TapiTbdImageVo> images, List<String> archs, ProgressListener listener) throws IOException {
-
-        // configure yaml -- with stream start "---", stream end "..." and tag root hashmap as "!tapi-tbd-v2"
-        DumperOptions options = new DumperOptions();
-        options.setExplicitStart(true);
-        options.setExplicitEnd(true);
-        Representer representer = new Representer();
-        representer.addClassTag(YamlHashTable.class, new Tag("!tapi-tbd-v2"));
-        Yaml yaml = new Yaml(representer, options);
+        Yaml yaml = createYaml();
 
         // move through all images, process and export as yaml
         int idx = -1; // -1 as it being incremented in begining of the loop not end
@@ -40,28 +33,45 @@ public class TapiTbdYamlExporter {
             if (listener != null)
                 listener.onImageExported(imageName, idx, images.size());
 
-            // prepare to write to file
-            String tblName;
-            if (imageName.endsWith(".dylib"))
-                tblName = imageName.replace(".dylib", ".tbd");
-            else
-                tblName = imageName + ".tbd";
+            exportImage(yaml, rootDir, imageName, images.get(imageName), archs);
+        }
+    }
 
-            File tblFile = new File(rootDir, tblName);
-            if (!tblFile.getParentFile().exists() && !tblFile.getParentFile().mkdirs())
-                throw new IOException("Ubable to create directories to " + tblFile);
-            try (FileWriter tblWriter = new FileWriter(tblFile)) {
-                // combine all platforms into one hash
-                Map<String, ?> yamlMap = buildImageYamlMap(imageName, images, archs);
-                yaml.dump(yamlMap, tblWriter);
-            }
+    /**
+     * exports single image as yaml file
+     * @param yaml yaml instance from createYaml(), it is not thread safe
+     * @param imageName name image is exported as (install name or alias)
+     */
+    public static void exportImage(Yaml yaml, File rootDir, String imageName, TapiTbdImageVo image, List<String> archs) throws IOException {
+        // prepare to write to file
+        String tblName;
+        if (imageName.endsWith(".dylib"))
+            tblName = imageName.replace(".dylib", ".tbd");
+        else
+            tblName = imageName + ".tbd";
+
+        File tblFile = new File(rootDir, tblName);
+        if (!tblFile.getParentFile().exists() && !tblFile.getParentFile().mkdirs())
+            throw new IOException("Ubable to create directories to " + tblFile);
+        try (FileWriter tblWriter = new FileWriter(tblFile)) {
+            // combine all platforms into one hash
+            Map<String, ?> yamlMap = buildImageYamlMap(image, archs);
+            yaml.dump(yamlMap, tblWriter);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, ?> buildImageYamlMap(String imageName, Map<String, TapiTbdImageVo> images, List<String> archs) {
-        TapiTbdImageVo image = images.get(imageName);
+    public static Yaml createYaml() {
+        // configure yaml -- with stream start "---", stream end "..." and tag root hashmap as "!tapi-tbd-v2"
+        DumperOptions options = new DumperOptions();
+        options.setExplicitStart(true);
+        options.setExplicitEnd(true);
+        Representer representer = new Representer();
+        representer.addClassTag(YamlHashTable.class, new Tag("!tapi-tbd-v2"));
+        return new Yaml(representer, options);
+    }
 
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> buildImageYamlMap(TapiTbdImageVo image, List<String> archs) {
         // build list of uuids
         List<String> uuids = new ArrayList<>();
         for (String arch : archs) {
@@ -0,0 +1,210 @@
+package org.robovm.sdk.dyld.macho;
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Iterative walker of export trie (LC_DYLD_INFO export info). Trie is walked depth first with explicit stack over
+ * raw bytes, symbol name being built is kept in single reusable byte buffer and String is created only for terminal
+ * nodes which flags pass the filter.
+ * Walker can be split into walkers of root subtrees that can be walked concurrently.
+ */
+public class ExportTrieWalker {
+
+    public interface Visitor {
+        /**
+         * called for each terminal node accepted by filter
+         * @param symbol exported symbol name
+         * @param flags export flags of terminal (EXPORT_SYMBOL_FLAGS_*)
+         */
+        void visit(String symbol, long flags);
+    }
+
+    // stack entry: node offset, length of parent prefix, offset and length of edge label
+    private static final int STACK_ENTRY_SIZE = 4;
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final int rootOffset;
+    private final byte[] rootPrefix;
+
+    private int pos;
+    private byte[] prefix = new byte[256];
+    private int[] stack = new int[64 * STACK_ENTRY_SIZE];
+
+    /**
+     * @param trie buffer with trie data in [position..limit], walker doesn't change its position
+     */
+    public ExportTrieWalker(ByteBuffer trie) {
+        this(trie, trie.position(), trie.limit(), 0, new byte[0]);
+    }
+
+    private ExportTrieWalker(ByteBuffer buffer, int start, int end, int rootOffset, byte[] rootPrefix) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.rootOffset = rootOffset;
+        this.rootPrefix = rootPrefix;
+    }
+
+    /**
+     * splits trie into subtrees of root node children, each gets own walker that starts with edge label as prefix
+     * and own buffer view so these can be walked from different threads. Terminal of root itself is not covered, it
+     * would be symbol with empty name.
+     * @return walkers in trie order, walking them one by one visits same symbols in same order as this walker
+     */
+    public List<ExportTrieWalker> split() throws MachOException {
+        List<ExportTrieWalker> walkers = new ArrayList<>();
+        if (end == start)
+            return walkers;
+
+        int terminalSize = terminalSize(rootOffset);
+        pos += terminalSize;
+        int childrenCount = readByte();
+        for (int idx = 0; idx < childrenCount; idx++) {
+            int labelOffset = pos;
+            int labelEnd = readLabel();
+            int childOffset = (int) uleb128();
+            byte[] childPrefix = Arrays.copyOf(rootPrefix, rootPrefix.length + labelEnd - labelOffset);
+            for (int labelIdx = labelOffset; labelIdx < labelEnd; labelIdx++)
+                childPrefix[rootPrefix.length + labelIdx - labelOffset] = buffer.get(labelIdx);
+            walkers.add(new ExportTrieWalker(buffer.duplicate(), start, end, childOffset, childPrefix));
+        }
+        return walkers;
+    }
+
+    public void walk(LongPredicate filter, Visitor visitor) throws MachOException {
+        if (end == start)
+            return;
+
+        int stackSize = 0;
+        if (rootPrefix.length > prefix.length)
+            prefix = Arrays.copyOf(prefix, rootPrefix.length * 2);
+        System.arraycopy(rootPrefix, 0, prefix, 0, rootPrefix.length);
+        pushNode(stackSize++, rootOffset, rootPrefix.length, 0, 0);
+        // each node is visited once in valid trie, more visits means loop
+        int nodesLeft = end - start;
+        while (stackSize > 0) {
+            if (nodesLeft-- == 0)
+                throw new MachOException("Export trie has a loop");
+
+            // pop node and append its edge label to parent prefix
+            int entry = --stackSize * STACK_ENTRY_SIZE;
+            int nodeOffset = stack[entry];
+            int prefixLength = stack[entry + 1] + stack[entry + 3];
+            appendPrefix(stack[entry + 1], stack[entry + 2], stack[entry + 3]);
+
+            // Nodes for a symbol start with a uleb128 that is the length of
+            // the exported symbol information for the string so far.
+            int terminalSize = terminalSize(nodeOffset);
+            int childrenPos = pos + terminalSize;
+            if (terminalSize != 0) {
+                long flags = uleb128();
+                if (filter.test(flags))
+                    visitor.visit(ByteReader.decodeString(prefix, 0, prefixLength), flags);
+            }
+            pos = childrenPos;
+
+            // After the optional exported symbol information is a byte of
+            // how many edges (0-255) that this node has leaving it,
+            // followed by each edge.
+            int childrenCount = readByte();
+            int firstChild = stackSize;
+            for (int idx = 0; idx < childrenCount; idx++) {
+                // Each edge is a zero terminated UTF8 of the addition chars
+                // in the symbol, followed by a uleb128 offset for the node that
+                // edge points to.
+                int labelOffset = pos;
+                int labelEnd = readLabel();
+                int childOffset = (int) uleb128();
+                pushNode(stackSize++, childOffset, prefixLength, labelOffset, labelEnd - labelOffset);
+            }
+
+            // children are popped in reverse, flip them to visit in trie order
+            reverseEntries(firstChild, stackSize - 1);
+        }
+    }
+
+    /**
+     * moves to node and reads size of its terminal info, position is left at terminal info
+     * @return size of terminal info, 0 if node is not terminal
+     */
+    private int terminalSize(int nodeOffset) throws MachOException {
+        if (nodeOffset < 0 || nodeOffset >= end - start)
+            throw new MachOException("Export trie node is out of trie @" + Integer.toHexString(nodeOffset));
+        pos = start + nodeOffset;
+        int terminalSize = (int) uleb128();
+        if (terminalSize < 0 || pos + terminalSize >= end)
+            throw new MachOException("Export trie node is truncated @" + Integer.toHexString(nodeOffset));
+        return terminalSize;
+    }
+
+    /**
+     * moves behind zero terminated edge label at current position
+     * @return end of label (offset of zero)
+     */
+    private int readLabel() throws MachOException {
+        int labelEnd = pos < end ? ByteReader.indexOfZero(buffer, pos, end) : -1;
+        if (labelEnd < 0)
+            throw new MachOException("Export trie edge is not terminated @" + Integer.toHexString(pos - start));
+        pos = labelEnd + 1;
+        return labelEnd;
+    }
+
+    private void pushNode(int index, int nodeOffset, int prefixLength, int labelOffset, int labelLength) {
+        int entry = index * STACK_ENTRY_SIZE;
+        if (entry + STACK_ENTRY_SIZE > stack.length)
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[entry] = nodeOffset;
+        stack[entry + 1] = prefixLength;
+        stack[entry + 2] = labelOffset;
+        stack[entry + 3] = labelLength;
+    }
+
+    private void reverseEntries(int first, int last) {
+        for (; first < last; first++, last--) {
+            for (int idx = 0; idx < STACK_ENTRY_SIZE; idx++) {
+                int tmp = stack[first * STACK_ENTRY_SIZE + idx];
+                stack[first * STACK_ENTRY_SIZE + idx] = stack[last * STACK_ENTRY_SIZE + idx];
+                stack[last * STACK_ENTRY_SIZE + idx] = tmp;
+            }
+        }
+    }
+
+    /**
+     * copies edge label into prefix buffer after parent prefix, everything behind parent prefix is not used
+     * any more as depth first walk is done with all nodes that were using it
+     */
+    private void appendPrefix(int prefixLength, int labelOffset, int labelLength) {
+        if (prefixLength + labelLength > prefix.length)
+            prefix = Arrays.copyOf(prefix, Math.max(prefix.length * 2, prefixLength + labelLength));
+        for (int idx = 0; idx < labelLength; idx++)
+            prefix[prefixLength + idx] = buffer.get(labelOffset + idx);
+    }
+
+    private int readByte() throws MachOException {
+        if (pos >= end)
+            throw new MachOException("Export trie is truncated");
+        return buffer.get(pos++) & 0xFF;
+    }
+
+    private long uleb128() throws MachOException {
+        long result = 0;
+        int bit = 0;
+        int p;
+        do {
+            p = readByte();
+            long slice = p & 0x7f;
+
+            result |= (slice << bit);
+            bit += 7;
+        } while ((p & 0x80) != 0);
+        return result;
+    }
+}
@@ -0,0 +1,403 @@
+package org.robovm.sdk.dyld.macho;
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cursor over load commands block of mach-o image. Commands are not materialized into objects, typed views
+ * (symtab, dyld info, dylib, uuid, segment) are flyweights that read fields of current command directly from
+ * underlying buffer. Views are created once per cursor.
+ * Commands can be iterated manually with next() or dispatched with walk() to visitors registered per command type.
+ */
+public class LoadCommandCursor {
+
+    public interface Visitor {
+        void visit(LoadCommandCursor cursor) throws MachOException;
+    }
+
+    // struct load_command
+    private static final StructLayout<Void> LOAD_COMMAND = new StructLayout<>();
+    private static final int CMD = LOAD_COMMAND.uint32();           // uint32_t cmd;		/* type of load command */
+    private static final int CMDSIZE = LOAD_COMMAND.uint32();       // uint32_t cmdsize;	/* total size of command in bytes */
+
+    // struct symtab_command
+    private static final StructLayout<Void> SYMTAB = new StructLayout<>(LOAD_COMMAND);
+    private static final int SYMTAB_SYMOFF = SYMTAB.uint32();       // uint32_t	symoff;		/* symbol table offset */
+    private static final int SYMTAB_NSYMS = SYMTAB.uint32();        // uint32_t	nsyms;		/* number of symbol table entries */
+    private static final int SYMTAB_STROFF = SYMTAB.uint32();       // uint32_t	stroff;		/* string table offset */
+    private static final int SYMTAB_STRSIZE = SYMTAB.uint32();      // uint32_t	strsize;	/* string table size in bytes */
+
+    // struct dyld_info_command
+    private static final StructLayout<Void> DYLD_INFO = new StructLayout<>(LOAD_COMMAND);
+    private static final int DYLD_INFO_REBASE_OFF = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_REBASE_SIZE = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_BIND_OFF = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_BIND_SIZE = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_WEAK_BIND_OFF = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_WEAK_BIND_SIZE = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_LAZY_BIND_OFF = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_LAZY_BIND_SIZE = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_EXPORT_OFF = DYLD_INFO.uint32();
+    private static final int DYLD_INFO_EXPORT_SIZE = DYLD_INFO.uint32();
+
+    // struct dylib_command
+    private static final StructLayout<Void> DYLIB = new StructLayout<>(LOAD_COMMAND);
+    private static final int DYLIB_NAME = DYLIB.uint32();           // union lc_str  name;			/* library's path name */
+    private static final int DYLIB_TIMESTAMP = DYLIB.uint32();      // uint32_t timestamp;			/* library's build time stamp */
+    private static final int DYLIB_CURRENT_VERSION = DYLIB.uint32(); // uint32_t current_version;		/* library's current version number */
+    private static final int DYLIB_COMPAT_VERSION = DYLIB.uint32(); // uint32_t compatibility_version;	/* library's compatibility vers number */
+
+    // struct uuid_command
+    private static final StructLayout<Void> UUID = new StructLayout<>(LOAD_COMMAND);
+    private static final int UUID_BYTES = UUID.chars(16);           // uint8_t	uuid[16];	/* the 128-bit uuid */
+
+    // struct segment_command
+    private static final StructLayout<Void> SEGMENT32 = new StructLayout<>(LOAD_COMMAND);
+    private static final int SEGMENT32_SEGNAME = SEGMENT32.chars(16);
+    private static final int SEGMENT32_VMADDR = SEGMENT32.uint32();
+    private static final int SEGMENT32_VMSIZE = SEGMENT32.uint32();
+    private static final int SEGMENT32_FILEOFF = SEGMENT32.uint32();
+    private static final int SEGMENT32_FILESIZE = SEGMENT32.uint32();
+    private static final int SEGMENT32_MAXPROT = SEGMENT32.uint32();
+    private static final int SEGMENT32_INITPROT = SEGMENT32.uint32();
+    private static final int SEGMENT32_NSECTS = SEGMENT32.uint32();
+    private static final int SEGMENT32_FLAGS = SEGMENT32.uint32();
+
+    // struct segment_command_64
+    private static final StructLayout<Void> SEGMENT64 = new StructLayout<>(LOAD_COMMAND);
+    private static final int SEGMENT64_SEGNAME = SEGMENT64.chars(16);
+    private static final int SEGMENT64_VMADDR = SEGMENT64.uint64();
+    private static final int SEGMENT64_VMSIZE = SEGMENT64.uint64();
+    private static final int SEGMENT64_FILEOFF = SEGMENT64.uint64();
+    private static final int SEGMENT64_FILESIZE = SEGMENT64.uint64();
+    private static final int SEGMENT64_MAXPROT = SEGMENT64.uint32();
+    private static final int SEGMENT64_INITPROT = SEGMENT64.uint32();
+    private static final int SEGMENT64_NSECTS = SEGMENT64.uint32();
+    private static final int SEGMENT64_FLAGS = SEGMENT64.uint32();
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+    private final int ncmds;
+    private final boolean is64b;
+
+    // current command
+    private int cmdIdx = -1;
+    private int offset;
+    private int cmd;
+    private int cmdsize;
+
+    // visitors
+    private int[] visitorCmds = new int[0];
+    private Visitor[] visitors = new Visitor[0];
+
+    // flyweight views
+    private SymtabView symtabView;
+    private DyldInfoView dyldInfoView;
+    private DylibView dylibView;
+    private UuidView uuidView;
+    private SegmentView segmentView;
+
+    /**
+     * @param buffer with load commands block between position and limit, ordered with byte order of image
+     * @param ncmds amount of commands in block
+     * @param is64b true for 64 bit image
+     */
+    public LoadCommandCursor(ByteBuffer buffer, int ncmds, boolean is64b) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+        this.end = buffer.limit();
+        this.ncmds = ncmds;
+        this.is64b = is64b;
+        this.offset = start;
+    }
+
+    /**
+     * registers visitor for command type, only one visitor per type is kept
+     * @return this cursor for chaining
+     */
+    public LoadCommandCursor on(int cmd, Visitor visitor) {
+        for (int idx = 0; idx < visitorCmds.length; idx++) {
+            if (visitorCmds[idx] == cmd) {
+                visitors[idx] = visitor;
+                return this;
+            }
+        }
+        int count = visitorCmds.length;
+        int[] newCmds = new int[count + 1];
+        Visitor[] newVisitors = new Visitor[count + 1];
+        System.arraycopy(visitorCmds, 0, newCmds, 0, count);
+        System.arraycopy(visitors, 0, newVisitors, 0, count);
+        newCmds[count] = cmd;
+        newVisitors[count] = visitor;
+        visitorCmds = newCmds;
+        visitors = newVisitors;
+        return this;
+    }
+
+    /**
+     * moves cursor back before first command, so commands can be walked again
+     */
+    public void rewind() {
+        offset = start;
+        cmdIdx = -1;
+        cmd = 0;
+        cmdsize = 0;
+    }
+
+    /**
+     * moves through all remaining commands and dispatches these to registered visitors
+     */
+    public void walk() throws MachOException {
+        while (next()) {
+            for (int idx = 0; idx < visitorCmds.length; idx++) {
+                if (visitorCmds[idx] == cmd) {
+                    visitors[idx].visit(this);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * moves cursor to next command
+     * @return false if there is no more commands
+     */
+    public boolean next() throws MachOException {
+        if (cmdIdx + 1 >= ncmds)
+            return false;
+        if (cmdIdx >= 0)
+            offset += cmdsize;
+        if (offset + LOAD_COMMAND.size() > end)
+            throw new MachOException("load command #" + (cmdIdx + 1) + " is outside of commands area");
+        cmdIdx += 1;
+        cmd = buffer.getInt(offset + CMD);
+        cmdsize = buffer.getInt(offset + CMDSIZE);
+        if (cmdsize < LOAD_COMMAND.size() || offset + cmdsize > end)
+            throw new MachOException("load command #" + cmdIdx + " has wrong size " + cmdsize);
+        return true;
+    }
+
+    public int cmd() {
+        return cmd;
+    }
+
+    public int cmdsize() {
+        return cmdsize;
+    }
+
+    /**
+     * @return offset of current command from start of commands block
+     */
+    public int offset() {
+        return offset - start;
+    }
+
+    public boolean is64b() {
+        return is64b;
+    }
+
+    public SymtabView symtab() {
+        if (symtabView == null)
+            symtabView = new SymtabView();
+        return symtabView;
+    }
+
+    public DyldInfoView dyldInfo() {
+        if (dyldInfoView == null)
+            dyldInfoView = new DyldInfoView();
+        return dyldInfoView;
+    }
+
+    public DylibView dylib() {
+        if (dylibView == null)
+            dylibView = new DylibView();
+        return dylibView;
+    }
+
+    public UuidView uuid() {
+        if (uuidView == null)
+            uuidView = new UuidView();
+        return uuidView;
+    }
+
+    public SegmentView segment() {
+        if (segmentView == null)
+            segmentView = new SegmentView();
+        return segmentView;
+    }
+
+    private long uint32(int fieldOffset) {
+        return buffer.getInt(offset + fieldOffset) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * decodes zero terminated string that starts in current command and can't go behind its end
+     */
+    private String string(int fieldOffset, int maxSize) {
+        int from = offset + fieldOffset;
+        int to = Math.min(from + maxSize, offset + cmdsize);
+        int zeroIdx = ByteReader.indexOfZero(buffer, from, to);
+        if (zeroIdx < 0)
+            zeroIdx = to;
+        byte[] bytes = new byte[zeroIdx - from];
+        for (int idx = 0; idx < bytes.length; idx++)
+            bytes[idx] = buffer.get(from + idx);
+        return ByteReader.decodeString(bytes, 0, bytes.length);
+    }
+
+    /**
+     * LC_SYMTAB view
+     */
+    public class SymtabView {
+        public long symoff() {
+            return uint32(SYMTAB_SYMOFF);
+        }
+
+        public long nsyms() {
+            return uint32(SYMTAB_NSYMS);
+        }
+
+        public long stroff() {
+            return uint32(SYMTAB_STROFF);
+        }
+
+        public long strsize() {
+            return uint32(SYMTAB_STRSIZE);
+        }
+    }
+
+    /**
+     * LC_DYLD_INFO/LC_DYLD_INFO_ONLY view
+     */
+    public class DyldInfoView {
+        public long rebase_off() {
+            return uint32(DYLD_INFO_REBASE_OFF);
+        }
+
+        public long rebase_size() {
+            return uint32(DYLD_INFO_REBASE_SIZE);
+        }
+
+        public long bind_off() {
+            return uint32(DYLD_INFO_BIND_OFF);
+        }
+
+        public long bind_size() {
+            return uint32(DYLD_INFO_BIND_SIZE);
+        }
+
+        public long weak_bind_off() {
+            return uint32(DYLD_INFO_WEAK_BIND_OFF);
+        }
+
+        public long weak_bind_size() {
+            return uint32(DYLD_INFO_WEAK_BIND_SIZE);
+        }
+
+        public long lazy_bind_off() {
+            return uint32(DYLD_INFO_LAZY_BIND_OFF);
+        }
+
+        public long lazy_bind_size() {
+            return uint32(DYLD_INFO_LAZY_BIND_SIZE);
+        }
+
+        public long export_off() {
+            return uint32(DYLD_INFO_EXPORT_OFF);
+        }
+
+        public long export_size() {
+            return uint32(DYLD_INFO_EXPORT_SIZE);
+        }
+    }
+
+    /**
+     * LC_ID_DYLIB, LC_REEXPORT_DYLIB, LC_LOAD_WEAK_DYLIB and other dylib_command view
+     */
+    public class DylibView {
+        /**
+         * @return library path, it is stored inside command
+         */
+        public String name() {
+            return string((int) uint32(DYLIB_NAME), cmdsize);
+        }
+
+        public long timestamp() {
+            return uint32(DYLIB_TIMESTAMP);
+        }
+
+        public long current_version() {
+            return uint32(DYLIB_CURRENT_VERSION);
+        }
+
+        public long compatibility_version() {
+            return uint32(DYLIB_COMPAT_VERSION);
+        }
+    }
+
+    /**
+     * LC_UUID view
+     */
+    public class UuidView {
+        /**
+         * copies uuid bytes into provided buffer, allows to reuse one buffer for all images
+         * @return dst
+         */
+        public byte[] bytes(byte[] dst) {
+            for (int idx = 0; idx < 16; idx++)
+                dst[idx] = buffer.get(offset + UUID_BYTES + idx);
+            return dst;
+        }
+    }
+
+    /**
+     * LC_SEGMENT/LC_SEGMENT_64 view, fields are read according to bitness of image
+     */
+    public class SegmentView {
+        public String segname() {
+            return string(is64b ? SEGMENT64_SEGNAME : SEGMENT32_SEGNAME, 16);
+        }
+
+        public long vmaddr() {
+            return is64b ? buffer.getLong(offset + SEGMENT64_VMADDR) : uint32(SEGMENT32_VMADDR);
+        }
+
+        public long vmsize() {
+            return is64b ? buffer.getLong(offset + SEGMENT64_VMSIZE) : uint32(SEGMENT32_VMSIZE);
+        }
+
+        public long fileoff() {
+            return is64b ? buffer.getLong(offset + SEGMENT64_FILEOFF) : uint32(SEGMENT32_FILEOFF);
+        }
+
+        public long filesize() {
+            return is64b ? buffer.getLong(offset + SEGMENT64_FILESIZE) : uint32(SEGMENT32_FILESIZE);
+        }
+
+        public int maxprot() {
+            return buffer.getInt(offset + (is64b ? SEGMENT64_MAXPROT : SEGMENT32_MAXPROT));
+        }
+
+        public int initprot() {
+            return buffer.getInt(offset + (is64b ? SEGMENT64_INITPROT : SEGMENT32_INITPROT));
+        }
+
+        public long nsects() {
+            return uint32(is64b ? SEGMENT64_NSECTS : SEGMENT32_NSECTS);
+        }
+
+        public long flags() {
+            return uint32(is64b ? SEGMENT64_FLAGS : SEGMENT32_FLAGS);
+        }
+
+        /**
+         * @return offset of first section header, from start of commands block
+         */
+        public int sectionsOffset() {
+            return offset - start + (is64b ? SEGMENT64.size() : SEGMENT32.size());
+        }
+    }
+}
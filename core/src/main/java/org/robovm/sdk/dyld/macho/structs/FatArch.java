@@ -17,12 +17,31 @@ package org.robovm.sdk.dyld.macho.structs;
 
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
 /**
  * @author Demyan Kimitsa
  * mach-o fat arch entry definition
  */
 public class FatArch {
+    // struct fat_arch
+    private static final StructLayout<FatArch> LAYOUT32 = new StructLayout<>(FatArch::new);
+    private static final int CPUTYPE_32 = LAYOUT32.int32((o, v) -> o.cputype = v);         // cpu_type_t	cputype;	/* cpu specifier (int) */
+    private static final int CPUSUBTYPE_32 = LAYOUT32.int32((o, v) -> o.cpusubtype = v);   // cpu_subtype_t	cpusubtype;	/* machine specifier (int) */
+    private static final int OFFSET_32 = LAYOUT32.uint32((o, v) -> o.offset = v);          // uint32_t	offset;		/* file offset to this object file */
+    private static final int SIZE_32 = LAYOUT32.uint32((o, v) -> o.size = v);              // uint32_t	size;		/* size of this object file */
+    private static final int ALIGN_32 = LAYOUT32.uint32((o, v) -> o.align = v);            // uint32_t	align;		/* alignment as a power of 2 */
+
+    // struct fat_arch_64
+    private static final StructLayout<FatArch> LAYOUT64 = new StructLayout<>(FatArch::new);
+    private static final int CPUTYPE_64 = LAYOUT64.int32((o, v) -> o.cputype = v);         // cpu_type_t	cputype;	/* cpu specifier (int) */
+    private static final int CPUSUBTYPE_64 = LAYOUT64.int32((o, v) -> o.cpusubtype = v);   // cpu_subtype_t	cpusubtype;	/* machine specifier (int) */
+    private static final int OFFSET_64 = LAYOUT64.uint64((o, v) -> o.offset = v);          // uint64_t	offset;		/* file offset to this object file */
+    private static final int SIZE_64 = LAYOUT64.uint64((o, v) -> o.size = v);              // uint64_t	size;		/* size of this object file */
+    private static final int ALIGN_64 = LAYOUT64.uint32((o, v) -> o.align = v);            // uint32_t	align;		/* alignment as a power of 2 */
+    private static final int RESERVED_64 = LAYOUT64.uint32((o, v) -> o.reserved = v);      // uint32_t	reserved;	/* reserved */
+
     private int cputype;
     private int cpusubtype;
     private long offset;
@@ -30,44 +49,19 @@ public class FatArch {
     private long align;
     private long reserved;
 
-    public FatArch(ByteReader reader, boolean is64b) {
-        read(reader, is64b);
+    private FatArch() {
     }
 
-    private FatArch read(ByteReader reader, boolean is64b) {
-        return is64b ? read64(reader) : read32(reader);
+    public FatArch(ByteReader reader, boolean is64b) {
+        OBJECT_READER(is64b).readObject(reader, this);
     }
 
     public FatArch read32(ByteReader reader) {
-        //cpu_type_t	cputype;	/* cpu specifier (int) */
-        cputype = reader.readInt32();
-        //cpu_subtype_t	cpusubtype;	/* machine specifier (int) */
-        cpusubtype = reader.readInt32();
-        //uint32_t	offset;		/* file offset to this object file */
-        offset = reader.readUnsignedInt32();
-        //uint32_t	size;		/* size of this object file */
-        size = reader.readUnsignedInt32();
-        //uint32_t	align;		/* alignment as a power of 2 */
-        align = reader.readUnsignedInt32();
-
-        return this;
+        return objectReader32.readObject(reader, this);
     }
 
     public FatArch read64(ByteReader reader) {
-        //cpu_type_t	cputype;	/* cpu specifier (int) */
-        cputype = reader.readInt32();
-        //cpu_subtype_t	cpusubtype;	/* machine specifier (int) */
-        cpusubtype = reader.readInt32();
-        //uint64_t	offset;		/* file offset to this object file */
-        offset = reader.readLong();
-        //uint64_t	size;		/* size of this object file */
-        size = reader.readLong();
-        //uint32_t	align;		/* alignment as a power of 2 */
-        align = reader.readUnsignedInt32();
-        //uint32_t	reserved;	/* reserved */
-        reserved = reader.readUnsignedInt32();
-
-        return this;
+        return objectReader64.readObject(reader, this);
     }
 
     public int cputype() {
@@ -91,32 +85,11 @@ public class FatArch {
     }
 
 
-    private static class ArchReader implements ByteReader.ObjectReader<FatArch> {
-        private final boolean is64b;
-
-        public ArchReader(boolean is64b) {
-            this.is64b = is64b;
-        }
-
-        @Override
-        public Class<FatArch> objectClass() {
-            return FatArch.class;
-        }
-
-        @Override
-        public int objectSize() {
-            return is64b ? (4 + 4 + 8 + 8 + 4 + 4) : (4 + 4 + 4 + 4 + 4);
-        }
+    private static StructReader<FatArch> objectReader32 = new StructReader<>(FatArch.class, LAYOUT32);
 
-        @Override
-        public FatArch readObject(ByteReader reader, FatArch object) {
-            return object == null ? new FatArch(reader, is64b) : object.read(reader, is64b);
-        }
-    };
+    private static StructReader<FatArch> objectReader64 = new StructReader<>(FatArch.class, LAYOUT64);
 
-    private static ByteReader.ObjectReader<FatArch> objectReader64 = new ArchReader(true);
-    private static ByteReader.ObjectReader<FatArch> objectReader32 = new ArchReader(false);
-    public static ByteReader.ObjectReader<FatArch> OBJECT_READER(boolean is64b) {
+    public static StructReader<FatArch> OBJECT_READER(boolean is64b) {
         return is64b ? objectReader64 : objectReader32;
     }
 }
@@ -17,12 +17,35 @@ package org.robovm.sdk.dyld.macho.structs;
 
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
+
+import java.nio.ByteBuffer;
 
 /**
  * @author Demyan Kimitsa
  * mach-o header definiton
  */
 public class MachHeader {
+    // struct mach_header
+    private static final StructLayout<MachHeader> LAYOUT32 = new StructLayout<>(MachHeader::new);
+    private static final int CPUTYPE_32 = LAYOUT32.int32((o, v) -> o.cputype = v);          // cpu_type_t	cputype;	/* cpu specifier */
+    private static final int CPUSUBTYPE_32 = LAYOUT32.int32((o, v) -> o.cpusubtype = v);    // cpu_subtype_t	cpusubtype;	/* machine specifier */
+    private static final int FILETYPE_32 = LAYOUT32.uint32((o, v) -> o.filetype = v);       // uint32_t	filetype;	/* type of file */
+    private static final int NCMDS_32 = LAYOUT32.uint32((o, v) -> o.ncmds = v);             // uint32_t	ncmds;		/* number of load commands */
+    private static final int SIZEOFCMDS_32 = LAYOUT32.uint32((o, v) -> o.sizeofcmds = v);   // uint32_t	sizeofcmds;	/* the size of all the load commands */
+    private static final int FLAGS_32 = LAYOUT32.uint32((o, v) -> o.flags = v);             // uint32_t	flags;		/* flags */
+
+    // struct mach_header_64
+    private static final StructLayout<MachHeader> LAYOUT64 = new StructLayout<>(MachHeader::new);
+    private static final int CPUTYPE_64 = LAYOUT64.int32((o, v) -> o.cputype = v);          // cpu_type_t	cputype;	/* cpu specifier */
+    private static final int CPUSUBTYPE_64 = LAYOUT64.int32((o, v) -> o.cpusubtype = v);    // cpu_subtype_t	cpusubtype;	/* machine specifier */
+    private static final int FILETYPE_64 = LAYOUT64.uint32((o, v) -> o.filetype = v);       // uint32_t	filetype;	/* type of file */
+    private static final int NCMDS_64 = LAYOUT64.uint32((o, v) -> o.ncmds = v);             // uint32_t	ncmds;		/* number of load commands */
+    private static final int SIZEOFCMDS_64 = LAYOUT64.uint32((o, v) -> o.sizeofcmds = v);   // uint32_t	sizeofcmds;	/* the size of all the load commands */
+    private static final int FLAGS_64 = LAYOUT64.uint32((o, v) -> o.flags = v);             // uint32_t	flags;		/* flags */
+    private static final int RESERVED_64 = LAYOUT64.uint32((o, v) -> o.reserved = v);       // uint32_t	reserved;	/* reserved */
+
     private int cputype;
     private int cpusubtype;
     private long filetype;
@@ -32,52 +55,19 @@ public class MachHeader {
     private long reserved;
     private boolean is64b;
 
+    private MachHeader() {
+    }
+
     public MachHeader(ByteReader reader, boolean is64b) {
-        if (is64b)
-            read64(reader);
-        else
-            read32(reader);
+        OBJECT_READER(is64b).readObject(reader, this);
     }
 
     public MachHeader read32(ByteReader reader) {
-        is64b = false;
-
-        //cpu_type_t	cputype;	/* cpu specifier */
-        cputype = reader.readInt32();
-        //cpu_subtype_t	cpusubtype;	/* machine specifier */
-        cpusubtype = reader.readInt32();
-        //uint32_t	filetype;	/* type of file */
-        filetype = reader.readInt32();
-        //uint32_t	ncmds;		/* number of load commands */
-        ncmds = reader.readInt32();
-        //uint32_t	sizeofcmds;	/* the size of all the load commands */
-        sizeofcmds = reader.readInt32();
-        //uint32_t	flags;		/* flags */
-        flags = reader.readInt32();
-
-        return this;
+        return objectReader32.readObject(reader, this);
     }
 
-
     public MachHeader read64(ByteReader reader) {
-        is64b = true;
-
-        //cpu_type_t	cputype;	/* cpu specifier */
-        cputype = reader.readInt32();
-        //cpu_subtype_t	cpusubtype;	/* machine specifier */
-        cpusubtype = reader.readInt32();
-        //uint32_t	filetype;	/* type of file */
-        filetype = reader.readUnsignedInt32();
-        //uint32_t	ncmds;		/* number of load commands */
-        ncmds = reader.readUnsignedInt32();
-        //uint32_t	sizeofcmds;	/* the size of all the load commands */
-        sizeofcmds = reader.readUnsignedInt32();
-        //uint32_t	flags;		/* flags */
-        flags = reader.readUnsignedInt32();
-        //uint32_t	reserved;	/* reserved */
-        reserved = reader.readUnsignedInt32();
-
-        return this;
+        return objectReader64.readObject(reader, this);
     }
 
     public int cputype() {
@@ -107,4 +97,26 @@ public class MachHeader {
     public boolean is64b() {
         return is64b;
     }
+
+    private static StructReader<MachHeader> objectReader32 = new StructReader<MachHeader>(MachHeader.class, LAYOUT32) {
+        @Override
+        public MachHeader decode(ByteBuffer buffer, int offset, MachHeader object) {
+            MachHeader header = super.decode(buffer, offset, object);
+            header.is64b = false;
+            return header;
+        }
+    };
+
+    private static StructReader<MachHeader> objectReader64 = new StructReader<MachHeader>(MachHeader.class, LAYOUT64) {
+        @Override
+        public MachHeader decode(ByteBuffer buffer, int offset, MachHeader object) {
+            MachHeader header = super.decode(buffer, offset, object);
+            header.is64b = true;
+            return header;
+        }
+    };
+
+    public static StructReader<MachHeader> OBJECT_READER(boolean is64b) {
+        return is64b ? objectReader64 : objectReader32;
+    }
 }
@@ -17,6 +17,8 @@ package org.robovm.sdk.dyld.macho.structs;
 
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 import org.robovm.sdk.dyld.macho.MachOConsts;
 
 /**
@@ -24,48 +26,33 @@ import org.robovm.sdk.dyld.macho.MachOConsts;
  * nlist structure definition
  */
 public class NList {
+    // struct nlist_64
+    static final StructLayout<NList> LAYOUT64 = new StructLayout<>(NList::new);
+    static final int N_STRX_64 = LAYOUT64.uint32((o, v) -> o.n_strx = v);         // uint32_t n_strx;	/* index into the string table */
+    static final int N_TYPE_64 = LAYOUT64.uint8((o, v) -> o.n_type = (byte) v);   // uint8_t n_type;		/* type flag, see below */
+    static final int N_SECT_64 = LAYOUT64.uint8((o, v) -> o.n_sect = (byte) v);   // uint8_t n_sect;		/* section number or NO_SECT */
+    static final int N_DESC_64 = LAYOUT64.uint16((o, v) -> o.n_desc = v);         // int16_t n_desc;		/* see <mach-o/stab.h> */
+    static final int N_VALUE_64 = LAYOUT64.uint64((o, v) -> o.n_value = v);       // uint64_t n_value;	/* value of this symbol (or stab offset) */
+
+    // struct nlist
+    static final StructLayout<NList> LAYOUT32 = new StructLayout<>(NList::new);
+    static final int N_STRX_32 = LAYOUT32.uint32((o, v) -> o.n_strx = v);         // uint32_t n_strx;	/* index into the string table */
+    static final int N_TYPE_32 = LAYOUT32.uint8((o, v) -> o.n_type = (byte) v);   // uint8_t n_type;		/* type flag, see below */
+    static final int N_SECT_32 = LAYOUT32.uint8((o, v) -> o.n_sect = (byte) v);   // uint8_t n_sect;		/* section number or NO_SECT */
+    static final int N_DESC_32 = LAYOUT32.uint16((o, v) -> o.n_desc = v);         // int16_t n_desc;		/* see <mach-o/stab.h> */
+    static final int N_VALUE_32 = LAYOUT32.uint32((o, v) -> o.n_value = v);       // uint32_t n_value;	/* value of this symbol (or stab offset) */
+
     private long n_strx;
     private byte n_type;
     private byte n_sect;
     private int n_desc;
     private long n_value;
 
-    public NList(ByteReader reader, boolean is64b) {
-        read(reader, is64b);
-    }
-
-    private NList read(ByteReader reader, boolean is64b) {
-        return is64b ? read64(reader) : read32(reader);
-    }
-
-    private NList read64(ByteReader reader) {
-        //uint32_t n_strx;	/* index into the string table */
-        n_strx = reader.readUnsignedInt32();
-        //uint8_t n_type;		/* type flag, see below */
-        n_type = reader.readByte();
-        //uint8_t n_sect;		/* section number or NO_SECT */
-        n_sect = reader.readByte();
-        //int16_t n_desc;		/* see <mach-o/stab.h> */
-        n_desc = reader.readUnsignedInt16();
-        //uint64_t n_value;	/* value of this symbol (or stab offset) */
-        n_value = reader.readLong();
-
-        return this;
+    private NList() {
     }
 
-    private NList read32(ByteReader reader) {
-        //uint32_t n_strx;	/* index into the string table */
-        n_strx = reader.readUnsignedInt32();
-        //uint8_t n_type;		/* type flag, see below */
-        n_type = reader.readByte();
-        //uint8_t n_sect;		/* section number or NO_SECT */
-        n_sect = reader.readByte();
-        //int16_t n_desc;		/* see <mach-o/stab.h> */
-        n_desc = reader.readUnsignedInt16();
-        // uint32_t n_value;	/* value of this symbol (or stab offset) */
-        n_value = reader.readUnsignedInt32();
-
-        return this;
+    public NList(ByteReader reader, boolean is64b) {
+        OBJECT_READER(is64b).readObject(reader, this);
     }
 
     public long n_strx() {
@@ -128,32 +115,11 @@ public class NList {
         return (n_desc & MachOConsts.nlist.N_WEAK_DEF) == MachOConsts.nlist.N_WEAK_DEF;
     }
 
-    private static class NListReader implements ByteReader.ObjectReader<NList> {
-        private final boolean is64b;
-
-        public NListReader(boolean is64b) {
-            this.is64b = is64b;
-        }
-
-        @Override
-        public Class<NList> objectClass() {
-            return NList.class;
-        }
-
-        @Override
-        public int objectSize() {
-            return is64b ? (4 + 1 + 1 + 2 + 8) : (4 + 1 + 1 + 2 + 4);
-        }
+    private static StructReader<NList> objectReader64 = new StructReader<>(NList.class, LAYOUT64);
 
-        @Override
-        public NList readObject(ByteReader reader, NList object) {
-            return object == null ? new NList(reader, is64b) : object.read(reader, is64b);
-        }
-    };
+    private static StructReader<NList> objectReader32 = new StructReader<>(NList.class, LAYOUT32);
 
-    private static ByteReader.ObjectReader<NList> objectReader64 = new NListReader(true);
-    private static ByteReader.ObjectReader<NList> objectReader32 = new NListReader(false);
-    public static ByteReader.ObjectReader<NList> OBJECT_READER(boolean is64b) {
+    public static StructReader<NList> OBJECT_READER(boolean is64b) {
         return is64b ? objectReader64 : objectReader32;
     }
 }
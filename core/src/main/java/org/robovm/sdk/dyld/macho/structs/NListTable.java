@@ -0,0 +1,157 @@
+package org.robovm.sdk.dyld.macho.structs;
+
+
+import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.macho.MachOConsts;
+
+import java.nio.ByteOrder;
+
+/**
+ * Symbol table decoded in columnar form: each nlist field is kept in own primitive array, entries are addressed
+ * by index. Type checks are done directly over arrays, without object per entry.
+ * Layout of entries is same as NList one
+ */
+public class NListTable {
+    // amount of entries decoded from one bulk read, keeps temporary word buffer small
+    private static final int DECODE_CHUNK = 4096;
+
+    private final int count;
+    private final int[] n_strx;
+    private final byte[] n_type;
+    private final byte[] n_sect;
+    private final short[] n_desc;
+    private final long[] n_value;
+
+    private NListTable(int count) {
+        this.count = count;
+        this.n_strx = new int[count];
+        this.n_type = new byte[count];
+        this.n_sect = new byte[count];
+        this.n_desc = new short[count];
+        this.n_value = new long[count];
+    }
+
+    /**
+     * reads symbol table
+     * @param reader positioned at first entry
+     * @param count amount of entries
+     * @param is64b true for nlist_64 entries
+     */
+    public static NListTable read(ByteReader reader, int count, boolean is64b) {
+        NListTable table = new NListTable(count);
+        boolean littleEndian = reader.order() == ByteOrder.LITTLE_ENDIAN;
+        // nlist_64 is read as two 64 bit words per entry, nlist as three 32 bit ones
+        int wordCount = is64b ? NList.LAYOUT64.size() / 8 : NList.LAYOUT32.size() / 4;
+        long[] words = new long[Math.min(DECODE_CHUNK, count) * wordCount];
+        for (int first = 0; first < count; first += DECODE_CHUNK) {
+            int chunk = Math.min(DECODE_CHUNK, count - first);
+            if (is64b) {
+                reader.readLongs(words, 0, chunk * wordCount);
+                table.decode64(words, littleEndian, first, chunk);
+            } else {
+                reader.readUnsignedInt32s(words, 0, chunk * wordCount);
+                table.decode32(words, littleEndian, first, chunk);
+            }
+        }
+        return table;
+    }
+
+    private void decode64(long[] words, boolean littleEndian, int first, int chunk) {
+        // n_strx, n_type, n_sect and n_desc share first word, n_value is second one
+        int strxShift = shift(NList.N_STRX_64, 4, 8, littleEndian);
+        int typeShift = shift(NList.N_TYPE_64, 1, 8, littleEndian);
+        int sectShift = shift(NList.N_SECT_64, 1, 8, littleEndian);
+        int descShift = shift(NList.N_DESC_64, 2, 8, littleEndian);
+        for (int idx = first, wordIdx = 0; idx < first + chunk; idx++, wordIdx += 2) {
+            long word = words[wordIdx];
+            n_strx[idx] = (int) (word >>> strxShift);
+            n_type[idx] = (byte) (word >>> typeShift);
+            n_sect[idx] = (byte) (word >>> sectShift);
+            n_desc[idx] = (short) (word >>> descShift);
+            n_value[idx] = words[wordIdx + 1];
+        }
+    }
+
+    private void decode32(long[] words, boolean littleEndian, int first, int chunk) {
+        // words are uint32: n_strx, packed n_type/n_sect/n_desc, n_value
+        int typeShift = shift(NList.N_TYPE_32, 1, 4, littleEndian);
+        int sectShift = shift(NList.N_SECT_32, 1, 4, littleEndian);
+        int descShift = shift(NList.N_DESC_32, 2, 4, littleEndian);
+        for (int idx = first, wordIdx = 0; idx < first + chunk; idx++, wordIdx += 3) {
+            long word = words[wordIdx + 1];
+            n_strx[idx] = (int) words[wordIdx];
+            n_type[idx] = (byte) (word >>> typeShift);
+            n_sect[idx] = (byte) (word >>> sectShift);
+            n_desc[idx] = (short) (word >>> descShift);
+            n_value[idx] = words[wordIdx + 2];
+        }
+    }
+
+    /**
+     * @return bit position of field inside of word it belongs to
+     */
+    private static int shift(int fieldOffset, int fieldSize, int wordSize, boolean littleEndian) {
+        int byteInWord = fieldOffset % wordSize;
+        return littleEndian ? byteInWord * 8 : (wordSize - byteInWord - fieldSize) * 8;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long n_strx(int idx) {
+        return n_strx[idx] & 0xFFFFFFFFL;
+    }
+
+    public byte n_type(int idx) {
+        return n_type[idx];
+    }
+
+    public byte n_sect(int idx) {
+        return n_sect[idx];
+    }
+
+    public int n_desc(int idx) {
+        return n_desc[idx] & 0xFFFF;
+    }
+
+    public long n_value(int idx) {
+        return n_value[idx];
+    }
+
+    public boolean isTypeStab(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_STAB) != 0;
+    }
+
+    public boolean isTypeStabGlobalSymb(int idx) {
+        return n_type[idx] == MachOConsts.stab.N_GSYM;
+    }
+
+    public boolean isTypePrivateExternal(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_PEXT) != 0;
+    }
+
+    public boolean isTypeExternal(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_EXT) != 0;
+    }
+
+    public boolean isTypeUndfined(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_TYPE) == MachOConsts.nlist.N_TYPE_UNDF;
+    }
+
+    public boolean isTypeSectDefined(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_TYPE) == MachOConsts.nlist.N_TYPE_SECT;
+    }
+
+    public boolean isTypePreboundUndefined(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_TYPE) == MachOConsts.nlist.N_TYPE_PBUD;
+    }
+
+    public boolean isTypeIndirect(int idx) {
+        return (n_type[idx] & MachOConsts.nlist.N_TYPE) == MachOConsts.nlist.N_TYPE_INDR;
+    }
+
+    public boolean isWeakDefined(int idx) {
+        return (n_desc[idx] & MachOConsts.nlist.N_WEAK_DEF) == MachOConsts.nlist.N_WEAK_DEF;
+    }
+}
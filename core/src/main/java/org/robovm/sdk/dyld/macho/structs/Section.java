@@ -2,12 +2,43 @@ package org.robovm.sdk.dyld.macho.structs;
 
 
 import org.robovm.sdk.dyld.bytereader.ByteReader;
+import org.robovm.sdk.dyld.bytereader.StructLayout;
+import org.robovm.sdk.dyld.bytereader.StructReader;
 
 /**
  * @author Demyan Kimitsa
  * mach-o section entry definition
  */
 public class Section {
+    // struct section
+    private static final StructLayout<Section> LAYOUT32 = new StructLayout<>(Section::new);
+    private static final int SECTNAME_32 = LAYOUT32.chars(16, (o, v) -> o.sectname = v);   // char		sectname[16];	/* name of this section */
+    private static final int SEGNAME_32 = LAYOUT32.chars(16, (o, v) -> o.segname = v);     // char		segname[16];	/* segment this section goes in */
+    private static final int ADDR_32 = LAYOUT32.uint32((o, v) -> o.addr = v);              // uint32_t	addr;		/* memory address of this section */
+    private static final int SIZE_32 = LAYOUT32.uint32((o, v) -> o.size = v);              // uint32_t	size;		/* size in bytes of this section */
+    private static final int OFFSET_32 = LAYOUT32.uint32((o, v) -> o.offset = v);          // uint32_t	offset;		/* file offset of this section */
+    private static final int ALIGN_32 = LAYOUT32.uint32((o, v) -> o.align = v);            // uint32_t	align;		/* section alignment (power of 2) */
+    private static final int RELOFF_32 = LAYOUT32.uint32((o, v) -> o.reloff = v);          // uint32_t	reloff;		/* file offset of relocation entries */
+    private static final int NRELOC_32 = LAYOUT32.uint32((o, v) -> o.nreloc = v);          // uint32_t	nreloc;		/* number of relocation entries */
+    private static final int FLAGS_32 = LAYOUT32.uint32((o, v) -> o.flags = v);            // uint32_t	flags;		/* flags (section type and attributes)*/
+    private static final int RESERVED1_32 = LAYOUT32.uint32((o, v) -> o.reserved1 = v);    // uint32_t	reserved1;	/* reserved (for offset or index) */
+    private static final int RESERVED2_32 = LAYOUT32.uint32((o, v) -> o.reserved2 = v);    // uint32_t	reserved2;	/* reserved (for count or sizeof) */
+
+    // struct section_64
+    private static final StructLayout<Section> LAYOUT64 = new StructLayout<>(Section::new);
+    private static final int SECTNAME_64 = LAYOUT64.chars(16, (o, v) -> o.sectname = v);   // char		sectname[16];	/* name of this section */
+    private static final int SEGNAME_64 = LAYOUT64.chars(16, (o, v) -> o.segname = v);     // char		segname[16];	/* segment this section goes in */
+    private static final int ADDR_64 = LAYOUT64.uint64((o, v) -> o.addr = v);              // uint64_t	addr;		/* memory address of this section */
+    private static final int SIZE_64 = LAYOUT64.uint64((o, v) -> o.size = v);              // uint64_t	size;		/* size in bytes of this section */
+    private static final int OFFSET_64 = LAYOUT64.uint32((o, v) -> o.offset = v);          // uint32_t	offset;		/* file offset of this section */
+    private static final int ALIGN_64 = LAYOUT64.uint32((o, v) -> o.align = v);            // uint32_t	align;		/* section alignment (power of 2) */
+    private static final int RELOFF_64 = LAYOUT64.uint32((o, v) -> o.reloff = v);          // uint32_t	reloff;		/* file offset of relocation entries */
+    private static final int NRELOC_64 = LAYOUT64.uint32((o, v) -> o.nreloc = v);          // uint32_t	nreloc;		/* number of relocation entries */
+    private static final int FLAGS_64 = LAYOUT64.uint32((o, v) -> o.flags = v);            // uint32_t	flags;		/* flags (section type and attributes)*/
+    private static final int RESERVED1_64 = LAYOUT64.uint32((o, v) -> o.reserved1 = v);    // uint32_t	reserved1;	/* reserved (for offset or index) */
+    private static final int RESERVED2_64 = LAYOUT64.uint32((o, v) -> o.reserved2 = v);    // uint32_t	reserved2;	/* reserved (for count or sizeof) */
+    private static final int RESERVED3_64 = LAYOUT64.uint32((o, v) -> o.reserved3 = v);    // uint32_t	reserved3;	/* reserved */
+
     private String sectname;
     private String segname;
     private long addr;
@@ -21,68 +52,11 @@ public class Section {
     private long reserved2;
     private long reserved3;
 
-    public Section(ByteReader reader, boolean is64b) {
-        read(reader, is64b);
-    }
-
-    private Section read(ByteReader reader, boolean is64b) {
-        return is64b ? read64(reader) : read32(reader);
-    }
-
-    private Section read32(ByteReader reader) {
-        //char		sectname[16];	/* name of this section */
-        sectname = reader.readString(16);
-        //char		segname[16];	/* segment this section goes in */
-        segname = reader.readString(16);
-        //uint32_t	addr;		/* memory address of this section */
-        addr = reader.readInt32();
-        //uint32_t	size;		/* size in bytes of this section */
-        size = reader.readInt32();
-        //uint32_t	offset;		/* file offset of this section */
-        offset = reader.readInt32();
-        //uint32_t	align;		/* section alignment (power of 2) */
-        align = reader.readInt32();
-        //uint32_t	reloff;		/* file offset of relocation entries */
-        reloff = reader.readInt32();
-        //uint32_t	nreloc;		/* number of relocation entries */
-        nreloc = reader.readInt32();
-        //uint32_t	flags;		/* flags (section type and attributes)*/
-        flags = reader.readInt32();
-        //uint32_t	reserved1;	/* reserved (for offset or index) */
-        reserved1 = reader.readInt32();
-        //uint32_t	reserved2;	/* reserved (for count or sizeof) */
-        reserved2 = reader.readInt32();
-
-        return this;
+    private Section() {
     }
 
-    private Section read64(ByteReader reader) {
-        //char		sectname[16];	/* name of this section */
-        sectname = reader.readString(16);
-        //char		segname[16];	/* segment this section goes in */
-        segname = reader.readString(16);
-        //uint64_t	addr;		/* memory address of this section */
-        addr = reader.readLong();
-        //uint64_t	size;		/* size in bytes of this section */
-        size = reader.readLong();
-        //uint32_t	offset;		/* file offset of this section */
-        offset = reader.readUnsignedInt32();
-        //uint32_t	align;		/* section alignment (power of 2) */
-        align = reader.readUnsignedInt32();
-        //uint32_t	reloff;		/* file offset of relocation entries */
-        reloff = reader.readUnsignedInt32();
-        //uint32_t	nreloc;		/* number of relocation entries */
-        nreloc = reader.readUnsignedInt32();
-        //uint32_t	flags;		/* flags (section type and attributes)*/
-        flags = reader.readUnsignedInt32();
-        //uint32_t	reserved1;	/* reserved (for offset or index) */
-        reserved1 = reader.readUnsignedInt32();
-        //uint32_t	reserved2;	/* reserved (for count or sizeof) */
-        reserved2 = reader.readUnsignedInt32();
-        //uint32_t	reserved3;	/* reserved */
-        reserved3 = reader.readUnsignedInt32();
-
-        return this;
+    public Section(ByteReader reader, boolean is64b) {
+        OBJECT_READER(is64b).readObject(reader, this);
     }
 
     public String sectname() {
@@ -121,32 +95,11 @@ public class Section {
         return flags;
     }
 
-    private static class SectionReader implements ByteReader.ObjectReader<Section> {
-        private final boolean is64b;
-
-        public SectionReader(boolean is64b) {
-            this.is64b = is64b;
-        }
-
-        @Override
-        public Class<Section> objectClass() {
-            return Section.class;
-        }
-
-        @Override
-        public int objectSize() {
-            return is64b ? (16 + 16 + 8 + 8 + 4 * 8) : (16 + 16 + 4 * 9);
-        }
+    private static StructReader<Section> objectReader32 = new StructReader<>(Section.class, LAYOUT32);
 
-        @Override
-        public Section readObject(ByteReader reader, Section object) {
-            return object == null ? new Section(reader, is64b) : object.read(reader, is64b);
-        }
-    };
+    private static StructReader<Section> objectReader64 = new StructReader<>(Section.class, LAYOUT64);
 
-    private static ByteReader.ObjectReader<Section> objectReader64 = new SectionReader(true);
-    private static ByteReader.ObjectReader<Section> objectReader32 = new SectionReader(false);
-    public static ByteReader.ObjectReader<Section> OBJECT_READER(boolean is64b) {
+    public static StructReader<Section> OBJECT_READER(boolean is64b) {
         return is64b ? objectReader64 : objectReader32;
     }
 }
@@ -0,0 +1,140 @@
+package org.robovm.sdk.dyld.bytereader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.robovm.sdk.dyld.bytereader.impl.FileByteReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * StringPool shall return string decoded at offset, same instance for all lookups of same offset
+ */
+public class StringPoolTest {
+    // string table is not at file start, pool is keyed by file offset while strings are read by table offset
+    private static final int TABLE_OFFSET = 100;
+
+    private final List<Integer> offsets = new ArrayList<>();
+    private final List<String> expected = new ArrayList<>();
+    private File file;
+    private RandomAccessFile raf;
+    private FileByteReader tableReader;
+
+    @Before
+    public void setUp() throws IOException {
+        // enough strings to grow stripes; suffix offsets are used as for names with stripped prefix
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        table.write(0);
+        Random random = new Random(1);
+        for (int idx = 0; idx < 5000; idx++) {
+            String name = idx % 100 == 0 ? "_caf\u00e9" + idx : "_OBJC_CLASS_$_" + Integer.toString(random.nextInt(), 36);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            addString(table.size(), name);
+            if (idx % 100 != 0) {
+                addString(table.size() + 14, name.substring(14));
+                addString(table.size() + 1, name.substring(1));
+            }
+            table.write(bytes, 0, bytes.length);
+            table.write(0);
+        }
+        addString(0, "");
+
+        file = File.createTempFile("stringpool", ".bin");
+        try (FileOutputStream os = new FileOutputStream(file)) {
+            os.write(new byte[TABLE_OFFSET]);
+            table.writeTo(os);
+        }
+        raf = new RandomAccessFile(file, "r");
+        tableReader = new FileByteReader(raf).sliceAt(TABLE_OFFSET, table.size());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        raf.close();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Test
+    public void returnsSameStringForEachOffset() {
+        StringPool pool = new StringPool();
+        List<String> first = new ArrayList<>();
+        for (int idx = 0; idx < offsets.size(); idx++) {
+            String value = pool.get(TABLE_OFFSET + offsets.get(idx), tableReader, offsets.get(idx));
+            assertEquals(expected.get(idx), value);
+            first.add(value);
+        }
+        assertEquals(offsets.size(), pool.size());
+        assertEquals(offsets.size(), pool.misses());
+
+        // cached one is returned, reader is not used any more
+        for (int idx = 0; idx < offsets.size(); idx++)
+            assertSame(first.get(idx), pool.get(TABLE_OFFSET + offsets.get(idx), null, -1));
+        assertEquals(offsets.size(), pool.hits());
+
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertEquals(expected.get(0), pool.get(TABLE_OFFSET + offsets.get(0), tableReader, offsets.get(0)));
+    }
+
+    @Test
+    public void concurrentLookupsShareString() throws Exception {
+        StringPool pool = new StringPool();
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String[]>> futures = new ArrayList<>();
+            for (int threadIdx = 0; threadIdx < threads; threadIdx++) {
+                // each thread gets own reader as readers keep position, offsets are looked up in different order
+                ByteReader reader = new FileByteReader(tableReader);
+                List<Integer> order = new ArrayList<>();
+                for (int idx = 0; idx < offsets.size(); idx++)
+                    order.add(idx);
+                Collections.shuffle(order, new Random(threadIdx));
+                futures.add(executor.submit(() -> {
+                    String[] values = new String[offsets.size()];
+                    for (int idx : order)
+                        values[idx] = pool.get(TABLE_OFFSET + offsets.get(idx), reader, offsets.get(idx));
+                    return values;
+                }));
+            }
+
+            String[] first = futures.get(0).get();
+            for (Future<String[]> future : futures) {
+                String[] values = future.get();
+                for (int idx = 0; idx < offsets.size(); idx++) {
+                    assertEquals(expected.get(idx), values[idx]);
+                    assertSame(first[idx], values[idx]);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(offsets.size(), pool.size());
+        assertEquals((long) threads * offsets.size(), pool.hits() + pool.misses());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeOffsetIsRejected() {
+        new StringPool().get(-1, tableReader, 0);
+    }
+
+    private void addString(int offset, String value) {
+        offsets.add(offset);
+        expected.add(value);
+    }
+}
@@ -0,0 +1,162 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trip of seekable gzip: GzipBlockSource.pack and reading it back
+ */
+public class GzipBlockSourceTest {
+    private static final int BLOCK_SIZE = 4096;
+    // header (12 bytes fixed part + 16 bytes 'RB' subfield) of first member
+    private static final int FIRST_DATA_OFFSET = 28;
+
+    private final byte[] data = new byte[10 * BLOCK_SIZE + 123];
+    private File src;
+    private File packed;
+
+    @Before
+    public void setUp() throws IOException {
+        // compressible but not trivial data
+        Random random = new Random(1);
+        for (int idx = 0; idx < data.length; idx++)
+            data[idx] = (byte) (random.nextInt(16) + (idx >> 10));
+        src = File.createTempFile("gzipblock", ".bin");
+        packed = File.createTempFile("gzipblock", ".gz");
+        try (FileOutputStream os = new FileOutputStream(src)) {
+            os.write(data);
+        }
+        GzipBlockSource.pack(src, packed, BLOCK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        src.delete();
+        //noinspection ResultOfMethodCallIgnored
+        packed.delete();
+    }
+
+    @Test
+    public void readsRandomRanges() throws IOException {
+        assertTrue(GzipBlockSource.isGzip(packed));
+        assertFalse(GzipBlockSource.isGzip(src));
+
+        GzipBlockSource source = new GzipBlockSource(packed);
+        try {
+            assertEquals(data.length, source.length());
+            assertEquals(BLOCK_SIZE, source.blockSize());
+            assertEquals(11, source.blockCount());
+
+            Random random = new Random(2);
+            for (int idx = 0; idx < 100; idx++) {
+                int offset = random.nextInt(data.length);
+                int size = 1 + random.nextInt(Math.min(3 * BLOCK_SIZE, data.length - offset));
+                byte[] buffer = new byte[size];
+                source.read(offset, buffer, 0, size);
+                assertArrayEquals(Arrays.copyOfRange(data, offset, offset + size), buffer);
+            }
+
+            // aligned whole blocks, including short last one
+            for (int blockIdx = 0; blockIdx < source.blockCount(); blockIdx++) {
+                int offset = blockIdx * BLOCK_SIZE;
+                int size = Math.min(BLOCK_SIZE, data.length - offset);
+                byte[] buffer = new byte[size];
+                source.read(offset, buffer, 0, size);
+                assertArrayEquals(Arrays.copyOfRange(data, offset, offset + size), buffer);
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void readsThroughBlockCache() throws IOException {
+        GzipBlockSource source = new GzipBlockSource(packed);
+        try {
+            PagedByteReader reader = new PagedByteReader(new BlockCache(source, source.blockSize(), 4));
+            reader.setPosition(BLOCK_SIZE - 2);
+            byte[] expected = Arrays.copyOfRange(data, BLOCK_SIZE - 2, BLOCK_SIZE + 6);
+            byte[] actual = new byte[expected.length];
+            reader.readBytes(actual.length).get(actual);
+            assertArrayEquals(expected, actual);
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void isPlainGzip() throws IOException {
+        // members are regular gzip, so stream can be unpacked by any gzip tool
+        ByteArrayOutputStream unpacked = new ByteArrayOutputStream();
+        try (InputStream is = new GZIPInputStream(new FileInputStream(packed))) {
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = is.read(buffer)) >= 0)
+                unpacked.write(buffer, 0, bytesRead);
+        }
+        assertArrayEquals(data, unpacked.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedMember() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(packed, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        new GzipBlockSource(packed).close();
+    }
+
+    @Test
+    public void rejectsCorruptMember() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(packed, "rw")) {
+            // damage compressed data of first block
+            byte[] chunk = new byte[16];
+            raf.seek(FIRST_DATA_OFFSET + 10);
+            raf.readFully(chunk);
+            for (int idx = 0; idx < chunk.length; idx++)
+                chunk[idx] ^= 0x5a;
+            raf.seek(FIRST_DATA_OFFSET + 10);
+            raf.write(chunk);
+        }
+        GzipBlockSource source = new GzipBlockSource(packed);
+        try {
+            source.read(0, new byte[16], 0, 16);
+            fail("corrupt block shall be rejected");
+        } catch (IOException ignored) {
+        } finally {
+            source.close();
+        }
+
+        // other blocks are still readable
+        try {
+            byte[] buffer = new byte[16];
+            source = new GzipBlockSource(packed);
+            source.read(BLOCK_SIZE, buffer, 0, 16);
+            assertArrayEquals(Arrays.copyOfRange(data, BLOCK_SIZE, BLOCK_SIZE + 16), buffer);
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsPlainFile() throws IOException {
+        Files.write(packed.toPath(), new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        new GzipBlockSource(packed).close();
+    }
+}
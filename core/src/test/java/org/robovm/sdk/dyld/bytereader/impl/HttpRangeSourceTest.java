@@ -0,0 +1,136 @@
+package org.robovm.sdk.dyld.bytereader.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks HttpRangeSource against local stand-in of device download server
+ */
+public class HttpRangeSourceTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private enum Mode {
+        PARTIAL, FULL_BODY, SHORT_BODY, UNKNOWN_LENGTH
+    }
+
+    private final byte[] data = new byte[100 * 1024];
+    private final Set<Integer> clientPorts = new HashSet<>();
+    private HttpServer server;
+    private URL url;
+    private volatile Mode mode = Mode.PARTIAL;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(1).nextBytes(data);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/cache", this::handle);
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/cache");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void readsRanges() throws IOException {
+        HttpRangeSource source = new HttpRangeSource(url);
+        assertEquals(data.length, source.length());
+
+        Random random = new Random(2);
+        for (int idx = 0; idx < 20; idx++) {
+            int offset = random.nextInt(data.length);
+            int size = 1 + random.nextInt(data.length - offset);
+            byte[] buffer = new byte[size + 8];
+            source.read(offset, buffer, 8, size);
+            assertArrayEquals(Arrays.copyOfRange(data, offset, offset + size), Arrays.copyOfRange(buffer, 8, buffer.length));
+        }
+
+        // bodies are drained so all requests go through same keep-alive connection
+        synchronized (clientPorts) {
+            assertEquals(1, clientPorts.size());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void readBehindEndFails() throws IOException {
+        HttpRangeSource source = new HttpRangeSource(url);
+        source.read(data.length - 10, new byte[20], 0, 20);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFullBody() throws IOException {
+        mode = Mode.FULL_BODY;
+        new HttpRangeSource(url);
+    }
+
+    @Test
+    public void rejectsFullBodyOnRead() throws IOException {
+        HttpRangeSource source = new HttpRangeSource(url);
+        mode = Mode.FULL_BODY;
+        try {
+            source.read(0, new byte[16], 0, 16);
+            fail("200 response shall be rejected");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void rejectsShortBody() throws IOException {
+        HttpRangeSource source = new HttpRangeSource(url);
+        mode = Mode.SHORT_BODY;
+        source.read(1024, new byte[4096], 0, 4096);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownLength() throws IOException {
+        mode = Mode.UNKNOWN_LENGTH;
+        new HttpRangeSource(url);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        synchronized (clientPorts) {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        try (OutputStream os = exchange.getResponseBody()) {
+            Matcher matcher = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+            if (mode == Mode.FULL_BODY || !matcher.matches()) {
+                exchange.sendResponseHeaders(200, data.length);
+                os.write(data);
+                return;
+            }
+
+            int from = Integer.parseInt(matcher.group(1));
+            int to = Math.min(Integer.parseInt(matcher.group(2)), data.length - 1);
+            if (from > to) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + data.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+            // short body: server cuts range in half
+            int length = mode == Mode.SHORT_BODY ? (to - from + 1) / 2 : to - from + 1;
+            String total = mode == Mode.UNKNOWN_LENGTH ? "*" : String.valueOf(data.length);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + (from + length - 1) + "/" + total);
+            exchange.sendResponseHeaders(206, length);
+            os.write(data, from, length);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.robovm.sdk.dyld.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.robovm.sdk.dyld.cache.tapi.TapiTbdImageVo;
+import org.robovm.sdk.dyld.cache.tapi.TapiUtils;
+import org.robovm.sdk.dyld.macho.MachOException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parsing modes of DyLdCache over synthetic cache: parallel, streaming, on demand and pruned parsing as well as
+ * trie only exports shall give same images as default sequential readImages
+ */
+public class DyLdCacheTest {
+    private static final String LIB_SYSTEM = "/usr/lib/libSystem.B.dylib";
+    private static final String LIBSYSTEM_C = "/usr/lib/system/libsystem_c.dylib";
+    private static final String LIBSYSTEM_M = "/usr/lib/system/libsystem_m.dylib";
+    private static final String LIBSYSTEM_KERNEL = "/usr/lib/system/libsystem_kernel.dylib";
+    private static final String UIKIT = "/System/Library/Frameworks/UIKit.framework/UIKit";
+    private static final String UIKIT_CORE = "/System/Library/PrivateFrameworks/UIKitCore.framework/UIKitCore";
+    private static final String FOUNDATION = "/System/Library/Frameworks/Foundation.framework/Foundation";
+    private static final String CORE_DATA = "/System/Library/Frameworks/CoreData.framework/CoreData";
+    private static final String LIBOBJC = "/usr/lib/libobjc.A.dylib";
+    private static final String LIBZ = "/usr/lib/libz.1.2.11.dylib";
+    private static final String LIBCXX = "/usr/lib/libc++.1.dylib";
+    private static final String LIBCXXABI = "/usr/lib/libc++abi.dylib";
+    private static final String UNUSED = "/System/Library/PrivateFrameworks/Unused.framework/Unused";
+    private static final String BUNDLE = "/System/Library/Frameworks/Foo.bundle/Foo";
+
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = File.createTempFile("dyldcache", ".bin");
+        // reexported private images follow images that reexport them, so streaming has to wait for them
+        cache().write(cacheFile);
+    }
+
+    @After
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        cacheFile.delete();
+    }
+
+    private static SyntheticCache cache() {
+        return new SyntheticCache()
+                .image(LIB_SYSTEM, LIBSYSTEM_C, LIBSYSTEM_KERNEL)
+                .image(UIKIT, UIKIT_CORE)
+                .image(LIBSYSTEM_C, LIBSYSTEM_M)
+                .image(FOUNDATION, LIBOBJC)
+                .image(LIBSYSTEM_KERNEL)
+                .image(LIBZ)
+                .image(UIKIT_CORE)
+                .image(LIBSYSTEM_M)
+                .image(LIBOBJC)
+                .image(UNUSED)
+                .image(BUNDLE)
+                .image(CORE_DATA).withoutTrie()
+                .image(LIBCXX, LIBCXXABI)
+                .image(LIBCXXABI);
+    }
+
+    @Test
+    public void parallelReadImagesEqualsSequential() throws MachOException {
+        List<String> sequentialProgress = new ArrayList<>();
+        Map<String, String> sequential = describe(new DyLdCache(cacheFile).readImages(
+                (image, imageIdx, imageCnt) -> sequentialProgress.add(imageIdx + " " + image)));
+
+        for (int parallelism = 2; parallelism <= 4; parallelism++) {
+            DyLdCache cache = new DyLdCache(cacheFile);
+            cache.setImageParallelism(parallelism);
+            cache.setIntraImageParallelEnabled(true);
+            List<String> progress = new ArrayList<>();
+            Map<String, String> parallel = describe(cache.readImages(
+                    (image, imageIdx, imageCnt) -> progress.add(imageIdx + " " + image)));
+
+            // same images in same order with same progress
+            assertEquals(new ArrayList<>(sequential.entrySet()), new ArrayList<>(parallel.entrySet()));
+            assertEquals(sequentialProgress, progress);
+        }
+    }
+
+    @Test
+    public void streamImagesMatchesReadImages() throws MachOException {
+        Map<String, String> expected = new TreeMap<>();
+        for (Map.Entry<String, String> e : describe(new DyLdCache(cacheFile).readImages(null)).entrySet()) {
+            if (TapiUtils.isPublicLocation(e.getKey()))
+                expected.put(e.getKey(), e.getValue());
+        }
+        assertTrue(expected.containsKey("/usr/lib/libz.dylib"));
+        assertTrue(expected.containsKey("/usr/lib/libpthread.dylib"));
+
+        for (int parallelism = 1; parallelism <= 2; parallelism++) {
+            DyLdCache cache = new DyLdCache(cacheFile);
+            cache.setImageParallelism(parallelism);
+            Map<String, String> streamed = new TreeMap<>();
+            List<Integer> indexes = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            cache.streamImages(null, (image, names, imageIdx, imageCnt) -> {
+                indexes.add(imageIdx);
+                counts.add(imageCnt);
+                for (String name : names)
+                    assertNull(name, streamed.put(name, describe(image)));
+            });
+
+            assertEquals(expected, streamed);
+            // all public images but bundle, libSystem last
+            assertEquals(Collections.nCopies(indexes.size(), 8), counts);
+            for (int idx = 0; idx < indexes.size(); idx++)
+                assertEquals(idx, (int) indexes.get(idx));
+        }
+    }
+
+    @Test
+    public void findImageReturnsSameImageAsFullParse() throws MachOException {
+        Map<String, String> expected = describe(new DyLdCache(cacheFile).readImages(null));
+
+        DyLdCache cache = new DyLdCache(cacheFile);
+        for (String installName : cache.getInstallNames()) {
+            if (installName.equals(BUNDLE)) {
+                assertNull(cache.findImage(installName));
+                continue;
+            }
+            assertEquals(installName, expected.get(installName), describe(cache.findImage(installName)));
+            // second lookup comes from cache
+            assertSame(cache.findImage(installName), cache.findImage(installName));
+        }
+        assertNull(cache.findImage("/usr/lib/libmissing.dylib"));
+
+        // private reexports are merged also when public image is looked up first in fresh cache
+        cache = new DyLdCache(cacheFile);
+        assertEquals(expected.get(LIB_SYSTEM), describe(cache.findImage(LIB_SYSTEM)));
+    }
+
+    @Test
+    public void pruningKeepsReexportedPrivateDylibs() throws MachOException {
+        Map<String, String> expected = describe(new DyLdCache(cacheFile).readImages(null));
+
+        DyLdCache cache = new DyLdCache(cacheFile);
+        cache.setReachabilityPruningEnabled(true);
+        Map<String, TapiTbdImageVo> images = cache.readImages(null);
+
+        // reexported private dylibs are kept, including ones reexported through other private dylib
+        for (String privateImage : new String[]{LIBSYSTEM_C, LIBSYSTEM_M, LIBSYSTEM_KERNEL, UIKIT_CORE})
+            assertEquals(privateImage, expected.get(privateImage), describe(images.get(privateImage)));
+        assertFalse(images.containsKey(UNUSED));
+        assertTrue(images.get(LIB_SYSTEM).getExportedSymbols().contains("_libsystem_m_func0"));
+        assertTrue(images.get(UIKIT).getExportedObjcClasses().contains("_UIKitCoreClass"));
+
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            if (TapiUtils.isPublicLocation(e.getKey()))
+                assertEquals(e.getKey(), e.getValue(), describe(images.get(e.getKey())));
+        }
+    }
+
+    @Test
+    public void trieOnlyWithCrossCheckAgreesWithSymtab() throws MachOException {
+        Map<String, String> expected = describe(new DyLdCache(cacheFile).readImages(null));
+        assertTrue(new DyLdCache(cacheFile).findImage(LIBZ).getExportedWeakDefined().contains("_libz_weak"));
+
+        DyLdCache cache = new DyLdCache(cacheFile);
+        cache.setTrieOnlyEnabled(true);
+        cache.setTrieCrossCheckEnabled(true);
+        assertEquals(expected, describe(cache.readImages(null)));
+
+        cache = new DyLdCache(cacheFile);
+        cache.setTrieOnlyEnabled(true);
+        assertEquals(expected, describe(cache.readImages(null)));
+    }
+
+    @Test
+    public void trieCrossCheckReportsSymtabOnlyExport() throws IOException, MachOException {
+        cache().image("/usr/lib/libbroken.dylib").symtabOnly("_broken_symtab_only").write(cacheFile);
+        DyLdCache cache = new DyLdCache(cacheFile);
+        cache.setTrieOnlyEnabled(true);
+        cache.setTrieCrossCheckEnabled(true);
+        try {
+            cache.readImages(null);
+            fail("cross check shall fail");
+        } catch (MachOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("_broken_symtab_only"));
+        }
+    }
+
+    private static Map<String, String> describe(Map<String, TapiTbdImageVo> images) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Map.Entry<String, TapiTbdImageVo> e : images.entrySet())
+            result.put(e.getKey(), describe(e.getValue()));
+        return result;
+    }
+
+    /**
+     * @return all data of image that goes to tbd, sets sorted
+     */
+    private static String describe(TapiTbdImageVo image) {
+        if (image == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        sb.append(image.getInstallName()).append(' ').append(image.getArch())
+                .append(" uuid=").append(image.getUuid())
+                .append(" current=").append(image.getCurrentVersion())
+                .append(" compat=").append(image.getCompatVersion()).append('\n');
+        for (int idx = 0; idx < TapiTbdImageVo.getExportItemCount(); idx++) {
+            sb.append(TapiTbdImageVo.getExportItemName(idx)).append(": ")
+                    .append(new TreeSet<>(image.getExportItems(idx)))
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+}
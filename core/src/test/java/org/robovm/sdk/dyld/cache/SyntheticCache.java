@@ -0,0 +1,254 @@
+package org.robovm.sdk.dyld.cache;
+
+import org.robovm.sdk.dyld.macho.ExportTrieBuilder;
+import org.robovm.sdk.dyld.macho.MachOConsts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes small arm64 dyld shared cache for tests: two mappings (text with mach headers, linkedit with nlists,
+ * shared string table and export tries) and image table. Each image exports few symbols of each kind (regular,
+ * weak, objc class and ivar, trie only reexport) named after the image, plus undefined and stab entries that
+ * shall be skipped
+ */
+class SyntheticCache {
+    private static final long TEXT_VM_ADDRESS = 0x180000000L;
+    private static final long LINKEDIT_VM_ADDRESS = 0x1a0000000L;
+
+    private static final int MAPPING_OFFSET = 0x100;
+    private static final int IMAGES_OFFSET = 0x200;
+    private static final int IMAGE_INFO_SIZE = 32;
+    private static final int MACH_HEADER_SIZE = 32;
+    private static final int NLIST64_SIZE = 16;
+
+    private static class Symbol {
+        final String name;
+        final int type;
+        final int desc;
+
+        Symbol(String name, int type, int desc) {
+            this.name = name;
+            this.type = type;
+            this.desc = desc;
+        }
+    }
+
+    private static class Image {
+        final String path;
+        final List<String> reexports;
+        final List<Symbol> symbols = new ArrayList<>();
+        final ExportTrieBuilder trie = new ExportTrieBuilder();
+        boolean hasTrie = true;
+        byte[] trieBytes;
+        int headerOffset;
+        long nlistOffset;
+        long trieOffset;
+
+        Image(String path, List<String> reexports) {
+            this.path = path;
+            this.reexports = reexports;
+        }
+    }
+
+    private final List<Image> images = new ArrayList<>();
+
+    /**
+     * appends image to image table
+     * @param reexports install names of LC_REEXPORT_DYLIB commands
+     */
+    SyntheticCache image(String path, String... reexports) {
+        Image image = new Image(path, Arrays.asList(reexports));
+        String tag = tag(path);
+        for (int idx = 0; idx < 3; idx++)
+            export(image, "_" + tag + "_func" + idx, 0, 0);
+        export(image, "_" + tag + "_weak", MachOConsts.nlist.N_WEAK_DEF, MachOConsts.trie.EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION);
+        export(image, "_OBJC_CLASS_$_" + tag + "Class", 0, 0);
+        export(image, "_OBJC_METACLASS_$_" + tag + "Class", 0, 0);
+        export(image, "_OBJC_IVAR_$_" + tag + "Class._ivar", 0, 0);
+        export(image, tag + "Alpha", 0, 0);
+        // not exports
+        image.symbols.add(new Symbol("_" + tag + "_undefined", 0x01, 0));
+        image.symbols.add(new Symbol("_" + tag + "_stab", 0x24, 0));
+        // symbol exported only by trie
+        image.trie.addReexport("_" + tag + "_reexported", 1);
+        images.add(image);
+        return this;
+    }
+
+    /**
+     * last added image gets no LC_DYLD_INFO_ONLY, its exports are only in symtab
+     */
+    SyntheticCache withoutTrie() {
+        images.get(images.size() - 1).hasTrie = false;
+        return this;
+    }
+
+    /**
+     * adds symbol to symtab of last added image that is missing in its export trie
+     */
+    SyntheticCache symtabOnly(String symbol) {
+        images.get(images.size() - 1).symbols.add(new Symbol(symbol, 0x0f, 0));
+        return this;
+    }
+
+    void write(File file) throws IOException {
+        // image table and paths
+        int pathsOffset = IMAGES_OFFSET + IMAGE_INFO_SIZE * images.size();
+        Map<Image, Integer> pathOffsets = new LinkedHashMap<>();
+        int offset = pathsOffset;
+        for (Image image : images) {
+            pathOffsets.put(image, offset);
+            offset += image.path.length() + 1;
+        }
+
+        // text: mach headers with load commands, size of these doesn't depend on offsets
+        int textStart = align(offset, 0x1000);
+        offset = 0;
+        for (Image image : images) {
+            image.headerOffset = offset;
+            offset += align(machHeader(image, 0, 0).length, 16);
+        }
+
+        // linkedit: nlists, string table shared by all images, tries
+        int linkeditStart = align(textStart + offset, 0x1000);
+        long linkedit = linkeditStart;
+        for (Image image : images) {
+            image.nlistOffset = linkedit;
+            linkedit += (long) NLIST64_SIZE * image.symbols.size();
+        }
+        long stringsOffset = linkedit;
+        Map<String, Integer> strx = new LinkedHashMap<>();
+        int stringsSize = 1;
+        for (Image image : images) {
+            for (Symbol symbol : image.symbols) {
+                if (!strx.containsKey(symbol.name)) {
+                    strx.put(symbol.name, stringsSize);
+                    stringsSize += symbol.name.length() + 1;
+                }
+            }
+        }
+        linkedit = align(linkedit + stringsSize, 8);
+        for (Image image : images) {
+            image.trieBytes = image.hasTrie ? image.trie.build() : new byte[0];
+            image.trieOffset = linkedit;
+            linkedit = align(linkedit + image.trieBytes.length, 8);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) linkedit).order(ByteOrder.LITTLE_ENDIAN);
+        // header
+        buffer.put("dyld_v1   arm64".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(16, MAPPING_OFFSET).putInt(20, 2).putInt(24, IMAGES_OFFSET).putInt(28, images.size());
+        buffer.putLong(32, TEXT_VM_ADDRESS);
+        // mappings
+        buffer.position(MAPPING_OFFSET);
+        buffer.putLong(TEXT_VM_ADDRESS).putLong(linkeditStart).putLong(0).putInt(5).putInt(5);
+        buffer.putLong(LINKEDIT_VM_ADDRESS).putLong(linkedit - linkeditStart).putLong(linkeditStart).putInt(1).putInt(1);
+        // images
+        buffer.position(IMAGES_OFFSET);
+        for (Image image : images)
+            buffer.putLong(TEXT_VM_ADDRESS + textStart + image.headerOffset).putLong(0).putLong(0).putInt(pathOffsets.get(image)).putInt(0);
+        for (Image image : images)
+            putString(buffer, pathOffsets.get(image), image.path);
+        for (Image image : images) {
+            buffer.position(textStart + image.headerOffset);
+            buffer.put(machHeader(image, stringsOffset, stringsSize));
+        }
+        // nlists and strings
+        for (Image image : images) {
+            buffer.position((int) image.nlistOffset);
+            for (Symbol symbol : image.symbols) {
+                boolean defined = (symbol.type & 0x0e) == 0x0e;
+                buffer.putInt(strx.get(symbol.name)).put((byte) symbol.type).put((byte) (defined ? 1 : 0))
+                        .putShort((short) symbol.desc).putLong(defined ? 0x1000 : 0);
+            }
+        }
+        for (Map.Entry<String, Integer> e : strx.entrySet())
+            putString(buffer, (int) stringsOffset + e.getValue(), e.getKey());
+        for (Image image : images) {
+            buffer.position((int) image.trieOffset);
+            buffer.put(image.trieBytes);
+        }
+
+        try (FileOutputStream os = new FileOutputStream(file)) {
+            os.write(buffer.array());
+        }
+    }
+
+    private static void export(Image image, String name, int desc, int trieFlags) {
+        image.symbols.add(new Symbol(name, 0x0f, desc));
+        image.trie.add(name, trieFlags, 0x1000);
+    }
+
+    /**
+     * @return ascii identifier made of file name of image, e.g. libsystem_c for /usr/lib/system/libsystem_c.dylib
+     */
+    private static String tag(String path) {
+        String name = new File(path).getName();
+        int dotIdx = name.indexOf('.');
+        name = dotIdx > 0 ? name.substring(0, dotIdx) : name;
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private byte[] machHeader(Image image, long stringsOffset, int stringsSize) {
+        List<byte[]> commands = new ArrayList<>();
+        commands.add(command(72, MachOConsts.commands.LC_SEGMENT_64)
+                .put("__TEXT".getBytes(StandardCharsets.US_ASCII)).array());
+        commands.add(dylib(MachOConsts.commands.LC_ID_DYLIB, image.path, 0x4a0102, 0x10203));
+        ByteBuffer uuid = command(24, MachOConsts.commands.LC_UUID);
+        uuid.putLong(image.path.hashCode()).putLong(images.indexOf(image));
+        commands.add(uuid.array());
+        for (String reexport : image.reexports)
+            commands.add(dylib(MachOConsts.commands.LC_REEXPORT_DYLIB, reexport, 0x10000, 0x10000));
+        commands.add(command(24, MachOConsts.commands.LC_SYMTAB).putInt((int) image.nlistOffset)
+                .putInt(image.symbols.size()).putInt((int) stringsOffset).putInt(stringsSize).array());
+        if (image.hasTrie) {
+            ByteBuffer dyldInfo = command(48, MachOConsts.commands.LC_DYLD_INFO_ONLY);
+            dyldInfo.putInt(40, (int) image.trieOffset).putInt(44, image.trieBytes != null ? image.trieBytes.length : 0);
+            commands.add(dyldInfo.array());
+        }
+
+        int sizeofcmds = 0;
+        for (byte[] command : commands)
+            sizeofcmds += command.length;
+        ByteBuffer header = ByteBuffer.allocate(MACH_HEADER_SIZE + sizeofcmds).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt((int) MachOConsts.MAGIC_64).putInt(0x0100000c).putInt(0).putInt(6)
+                .putInt(commands.size()).putInt(sizeofcmds).putInt(0).putInt(0);
+        for (byte[] command : commands)
+            header.put(command);
+        return header.array();
+    }
+
+    private static ByteBuffer command(int size, int cmd) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN).putInt(cmd).putInt(size);
+    }
+
+    private static byte[] dylib(int cmd, String name, int currentVersion, int compatVersion) {
+        ByteBuffer command = command(align(24 + name.length() + 1, 8), cmd);
+        command.putInt(24).putInt(2).putInt(currentVersion).putInt(compatVersion);
+        command.put(name.getBytes(StandardCharsets.US_ASCII));
+        return command.array();
+    }
+
+    private static void putString(ByteBuffer buffer, int offset, String value) {
+        buffer.position(offset);
+        buffer.put(value.getBytes(StandardCharsets.UTF_8)).put((byte) 0);
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
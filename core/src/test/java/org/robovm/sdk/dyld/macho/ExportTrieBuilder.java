@@ -0,0 +1,153 @@
+package org.robovm.sdk.dyld.macho;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds export trie (LC_DYLD_INFO export info) for test fixtures. Symbols are kept sorted, so trie order is
+ * alphabetical order of (ascii) names. Nodes are written in pre-order as ld64 does
+ */
+public class ExportTrieBuilder {
+    private static class Node {
+        byte[] terminal;
+        final List<byte[]> labels = new ArrayList<>();
+        final List<Node> children = new ArrayList<>();
+        int offset;
+    }
+
+    private final TreeMap<String, byte[]> terminals = new TreeMap<>();
+    private final TreeMap<String, Long> flags = new TreeMap<>();
+
+    /**
+     * adds regular export, terminal info is flags followed by address
+     */
+    public ExportTrieBuilder add(String symbol, long flags, long address) {
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        uleb128(info, flags);
+        uleb128(info, address);
+        terminals.put(symbol, info.toByteArray());
+        this.flags.put(symbol, flags);
+        return this;
+    }
+
+    /**
+     * adds reexport of symbol with same name from dylib with given ordinal
+     */
+    public ExportTrieBuilder addReexport(String symbol, long ordinal) {
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        uleb128(info, MachOConsts.trie.EXPORT_SYMBOL_FLAGS_REEXPORT);
+        uleb128(info, ordinal);
+        info.write(0);
+        terminals.put(symbol, info.toByteArray());
+        flags.put(symbol, (long) MachOConsts.trie.EXPORT_SYMBOL_FLAGS_REEXPORT);
+        return this;
+    }
+
+    /**
+     * @return symbols in trie order with their export flags
+     */
+    public Map<String, Long> symbols() {
+        return flags;
+    }
+
+    public byte[] build() {
+        if (terminals.isEmpty())
+            return new byte[0];
+        Node root = node(new ArrayList<>(terminals.keySet()), 0);
+        List<Node> nodes = new ArrayList<>();
+        collect(root, nodes);
+
+        // node size depends on uleb128 size of child offsets, repeat until offsets settle
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int offset = 0;
+            for (Node node : nodes) {
+                if (node.offset != offset) {
+                    node.offset = offset;
+                    changed = true;
+                }
+                offset += encode(node).length;
+            }
+        }
+
+        ByteArrayOutputStream trie = new ByteArrayOutputStream();
+        for (Node node : nodes) {
+            byte[] bytes = encode(node);
+            trie.write(bytes, 0, bytes.length);
+        }
+        return trie.toByteArray();
+    }
+
+    /**
+     * @param names sorted names that share first depth characters
+     */
+    private Node node(List<String> names, int depth) {
+        Node node = new Node();
+        int idx = 0;
+        if (names.get(0).length() == depth)
+            node.terminal = terminals.get(names.get(idx++));
+        while (idx < names.size()) {
+            // group of names with same next character, edge takes their common prefix
+            char first = names.get(idx).charAt(depth);
+            int groupEnd = idx;
+            while (groupEnd < names.size() && names.get(groupEnd).charAt(depth) == first)
+                groupEnd++;
+            List<String> group = names.subList(idx, groupEnd);
+            int prefixEnd = depth + 1;
+            while (commonAt(group, prefixEnd))
+                prefixEnd++;
+            node.labels.add(group.get(0).substring(depth, prefixEnd).getBytes(StandardCharsets.US_ASCII));
+            node.children.add(node(group, prefixEnd));
+            idx = groupEnd;
+        }
+        return node;
+    }
+
+    private static boolean commonAt(List<String> names, int charIdx) {
+        String first = names.get(0);
+        if (first.length() <= charIdx)
+            return false;
+        for (String name : names) {
+            if (name.length() <= charIdx || name.charAt(charIdx) != first.charAt(charIdx))
+                return false;
+        }
+        return true;
+    }
+
+    private static void collect(Node node, List<Node> nodes) {
+        nodes.add(node);
+        for (Node child : node.children)
+            collect(child, nodes);
+    }
+
+    private static byte[] encode(Node node) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (node.terminal != null) {
+            uleb128(bytes, node.terminal.length);
+            bytes.write(node.terminal, 0, node.terminal.length);
+        } else {
+            bytes.write(0);
+        }
+        bytes.write(node.children.size());
+        for (int idx = 0; idx < node.children.size(); idx++) {
+            byte[] label = node.labels.get(idx);
+            bytes.write(label, 0, label.length);
+            bytes.write(0);
+            uleb128(bytes, node.children.get(idx).offset);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void uleb128(ByteArrayOutputStream os, long value) {
+        do {
+            int b = (int) (value & 0x7f);
+            value >>>= 7;
+            os.write(value != 0 ? b | 0x80 : b);
+        } while (value != 0);
+    }
+}
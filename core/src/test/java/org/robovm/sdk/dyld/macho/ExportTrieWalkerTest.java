@@ -0,0 +1,153 @@
+package org.robovm.sdk.dyld.macho;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongPredicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walking of export trie: whole trie, its split subtrees and broken tries
+ */
+public class ExportTrieWalkerTest {
+    private ExportTrieBuilder builder;
+    private ByteBuffer trie;
+
+    @Before
+    public void setUp() {
+        // names share prefixes and some of them are prefix of other ones, so there are terminals with children
+        builder = new ExportTrieBuilder();
+        Random random = new Random(1);
+        for (int idx = 0; idx < 500; idx++) {
+            StringBuilder name = new StringBuilder("_");
+            int length = 1 + random.nextInt(12);
+            for (int charIdx = 0; charIdx < length; charIdx++)
+                name.append("abcAB_".charAt(random.nextInt(6)));
+            if (idx % 7 == 0)
+                builder.add(name.toString(), MachOConsts.trie.EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION, idx);
+            else if (idx % 11 == 0)
+                builder.addReexport(name.toString(), 1);
+            else
+                builder.add(name.toString(), MachOConsts.trie.EXPORT_SYMBOL_FLAGS_KIND_REGULAR, idx);
+        }
+        builder.add("OBJC", 0, 0).add("OBJC_CLASS", 0, 0).add("z", 0, 0);
+        // trie doesn't start at buffer start
+        byte[] bytes = builder.build();
+        trie = ByteBuffer.allocate(bytes.length + 16);
+        trie.position(8);
+        trie.put(bytes);
+        trie.position(8);
+        trie.limit(8 + bytes.length);
+    }
+
+    @Test
+    public void walkVisitsAllExportsInTrieOrder() throws MachOException {
+        List<String> expected = new ArrayList<>();
+        for (Map.Entry<String, Long> e : builder.symbols().entrySet())
+            expected.add(e.getKey() + " " + e.getValue());
+
+        assertEquals(expected, walk(new ExportTrieWalker(trie), flags -> true));
+        assertEquals(8, trie.position());
+
+        // filter is applied to flags
+        List<String> weak = new ArrayList<>();
+        for (Map.Entry<String, Long> e : builder.symbols().entrySet()) {
+            if (e.getValue() == MachOConsts.trie.EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION)
+                weak.add(e.getKey() + " " + e.getValue());
+        }
+        assertEquals(weak, walk(new ExportTrieWalker(trie),
+                flags -> (flags & MachOConsts.trie.EXPORT_SYMBOL_FLAGS_WEAK_DEFINITION) != 0));
+    }
+
+    @Test
+    public void splitWalkersVisitSameSymbolsInSameOrder() throws Throwable {
+        List<String> expected = walk(new ExportTrieWalker(trie), flags -> true);
+
+        List<ExportTrieWalker> walkers = new ExportTrieWalker(trie).split();
+        assertTrue(walkers.size() > 1);
+        List<String> sequential = new ArrayList<>();
+        for (ExportTrieWalker walker : walkers)
+            sequential.addAll(walk(walker, flags -> true));
+        assertEquals(expected, sequential);
+
+        // split walkers have own buffer views, so can be walked concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (ExportTrieWalker walker : new ExportTrieWalker(trie).split())
+                futures.add(executor.submit(() -> {
+                    try {
+                        return walk(walker, flags -> true);
+                    } catch (MachOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            List<String> concurrent = new ArrayList<>();
+            for (Future<List<String>> future : futures)
+                concurrent.addAll(future.get());
+            assertEquals(expected, concurrent);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyTrieHasNoSymbols() throws MachOException {
+        ExportTrieWalker walker = new ExportTrieWalker(ByteBuffer.allocate(0));
+        assertTrue(walk(walker, flags -> true).isEmpty());
+        assertTrue(walker.split().isEmpty());
+    }
+
+    @Test
+    public void loopIsReported() {
+        // root has single child which is root again
+        assertWalkFails(new byte[]{0, 1, 'a', 0, 0}, "loop");
+    }
+
+    @Test
+    public void truncationIsReported() {
+        // terminal info is longer than trie
+        assertWalkFails(new byte[]{5, 0}, "truncated");
+        // child count is missing
+        assertWalkFails(new byte[]{0}, "truncated");
+        // edge label is not terminated
+        assertWalkFails(new byte[]{0, 1, 'a', 'b'}, "not terminated");
+        // child is behind end of trie
+        assertWalkFails(new byte[]{0, 1, 'a', 0, 0x7f}, "out of trie");
+
+        // valid trie that is cut anywhere
+        byte[] bytes = builder.build();
+        for (int length = 1; length < bytes.length; length += 97) {
+            try {
+                walk(new ExportTrieWalker(ByteBuffer.wrap(Arrays.copyOf(bytes, length))), flags -> true);
+                fail("trie cut at " + length + " shall fail");
+            } catch (MachOException ignored) {
+            }
+        }
+    }
+
+    private static void assertWalkFails(byte[] bytes, String message) {
+        try {
+            walk(new ExportTrieWalker(ByteBuffer.wrap(bytes)), flags -> true);
+            fail("walk of " + Arrays.toString(bytes) + " shall fail");
+        } catch (MachOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private static List<String> walk(ExportTrieWalker walker, LongPredicate filter) throws MachOException {
+        List<String> symbols = new ArrayList<>();
+        walker.walk(filter, (symbol, flags) -> symbols.add(symbol + " " + flags));
+        return symbols;
+    }
+}
@@ -0,0 +1,199 @@
+package org.robovm.sdk.dyld.macho;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Views of LoadCommandCursor shall give same values as were written into fields of load commands
+ */
+public class LoadCommandCursorTest {
+    private static final String DYLIB_NAME = "/usr/lib/libz.1.dylib";
+    private static final int LC_FUNCTION_STARTS = 0x26;
+    // commands block doesn't start at buffer start
+    private static final int START = 12;
+
+    @Test
+    public void viewsMatchFieldValues() throws MachOException {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            LoadCommandCursor cursor = new LoadCommandCursor(commands64(order), 6, true);
+
+            assertTrue(cursor.next());
+            assertEquals(MachOConsts.commands.LC_SEGMENT_64, cursor.cmd());
+            assertEquals(72 + 80, cursor.cmdsize());
+            assertEquals(0, cursor.offset());
+            LoadCommandCursor.SegmentView segment = cursor.segment();
+            assertEquals("__TEXT", segment.segname());
+            assertEquals(0x180001000L, segment.vmaddr());
+            assertEquals(0x4000, segment.vmsize());
+            assertEquals(0x1000, segment.fileoff());
+            assertEquals(0x3000, segment.filesize());
+            assertEquals(7, segment.maxprot());
+            assertEquals(5, segment.initprot());
+            assertEquals(1, segment.nsects());
+            assertEquals(0x10, segment.flags());
+            assertEquals(72, segment.sectionsOffset());
+
+            assertTrue(cursor.next());
+            assertEquals(MachOConsts.commands.LC_ID_DYLIB, cursor.cmd());
+            assertEquals(152, cursor.offset());
+            LoadCommandCursor.DylibView dylib = cursor.dylib();
+            assertEquals(DYLIB_NAME, dylib.name());
+            assertEquals(2, dylib.timestamp());
+            assertEquals(0x4a0102, dylib.current_version());
+            assertEquals(0xffff0203L, dylib.compatibility_version());
+
+            assertTrue(cursor.next());
+            assertEquals(MachOConsts.commands.LC_UUID, cursor.cmd());
+            byte[] uuid = new byte[16];
+            assertSame(uuid, cursor.uuid().bytes(uuid));
+            for (int idx = 0; idx < uuid.length; idx++)
+                assertEquals(idx + 1, uuid[idx]);
+
+            assertTrue(cursor.next());
+            assertEquals(MachOConsts.commands.LC_SYMTAB, cursor.cmd());
+            LoadCommandCursor.SymtabView symtab = cursor.symtab();
+            assertEquals(0x1000, symtab.symoff());
+            assertEquals(42, symtab.nsyms());
+            assertEquals(0x2000, symtab.stroff());
+            assertEquals(0x80000000L, symtab.strsize());
+
+            assertTrue(cursor.next());
+            assertEquals(MachOConsts.commands.LC_DYLD_INFO_ONLY, cursor.cmd());
+            LoadCommandCursor.DyldInfoView dyldInfo = cursor.dyldInfo();
+            assertEquals(1, dyldInfo.rebase_off());
+            assertEquals(2, dyldInfo.rebase_size());
+            assertEquals(3, dyldInfo.bind_off());
+            assertEquals(4, dyldInfo.bind_size());
+            assertEquals(5, dyldInfo.weak_bind_off());
+            assertEquals(6, dyldInfo.weak_bind_size());
+            assertEquals(7, dyldInfo.lazy_bind_off());
+            assertEquals(8, dyldInfo.lazy_bind_size());
+            assertEquals(9, dyldInfo.export_off());
+            assertEquals(10, dyldInfo.export_size());
+
+            assertTrue(cursor.next());
+            assertEquals(LC_FUNCTION_STARTS, cursor.cmd());
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void segment32ViewMatchesFieldValues() throws MachOException {
+        ByteBuffer buffer = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MachOConsts.commands.LC_SEGMENT).putInt(56).put(name16("__LINKEDIT"))
+                .putInt(0x8000).putInt(0x2000).putInt(0x6000).putInt(0x1800).putInt(1).putInt(1).putInt(0).putInt(4);
+        buffer.flip();
+        LoadCommandCursor cursor = new LoadCommandCursor(buffer, 1, false);
+
+        assertTrue(cursor.next());
+        LoadCommandCursor.SegmentView segment = cursor.segment();
+        assertEquals("__LINKEDIT", segment.segname());
+        assertEquals(0x8000, segment.vmaddr());
+        assertEquals(0x2000, segment.vmsize());
+        assertEquals(0x6000, segment.fileoff());
+        assertEquals(0x1800, segment.filesize());
+        assertEquals(1, segment.maxprot());
+        assertEquals(1, segment.initprot());
+        assertEquals(0, segment.nsects());
+        assertEquals(4, segment.flags());
+        assertEquals(56, segment.sectionsOffset());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void walkDispatchesToVisitors() throws MachOException {
+        LoadCommandCursor cursor = new LoadCommandCursor(commands64(ByteOrder.LITTLE_ENDIAN), 6, true);
+        List<String> visited = new ArrayList<>();
+        cursor.on(MachOConsts.commands.LC_SYMTAB, c -> visited.add("replaced"))
+                .on(MachOConsts.commands.LC_ID_DYLIB, c -> visited.add(c.dylib().name()))
+                .on(MachOConsts.commands.LC_SYMTAB, c -> visited.add("nsyms " + c.symtab().nsyms()))
+                .on(MachOConsts.commands.LC_DYLD_INFO_ONLY, c -> visited.add("export " + c.dyldInfo().export_size()));
+        cursor.walk();
+        cursor.rewind();
+        cursor.walk();
+
+        List<String> expected = new ArrayList<>();
+        for (int idx = 0; idx < 2; idx++) {
+            expected.add(DYLIB_NAME);
+            expected.add("nsyms 42");
+            expected.add("export 10");
+        }
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void brokenCommandsAreReported() {
+        // more commands than block has
+        assertNextFails(new LoadCommandCursor(commands64(ByteOrder.LITTLE_ENDIAN), 7, true), "outside");
+
+        // cmdsize behind end of block
+        ByteBuffer buffer = commands64(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(START + 4, 0x1000);
+        assertNextFails(new LoadCommandCursor(buffer, 6, true), "wrong size");
+
+        // cmdsize smaller than load_command
+        buffer = commands64(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(START + 4, 4);
+        assertNextFails(new LoadCommandCursor(buffer, 6, true), "wrong size");
+    }
+
+    private static void assertNextFails(LoadCommandCursor cursor, String message) {
+        try {
+            //noinspection StatementWithEmptyBody
+            while (cursor.next()) {
+            }
+            fail("broken commands shall fail");
+        } catch (MachOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    /**
+     * @return segment with one section, id dylib, uuid, symtab, dyld info and command without view
+     */
+    private static ByteBuffer commands64(ByteOrder order) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(order);
+        buffer.position(START);
+
+        buffer.putInt(MachOConsts.commands.LC_SEGMENT_64).putInt(72 + 80).put(name16("__TEXT"))
+                .putLong(0x180001000L).putLong(0x4000).putLong(0x1000).putLong(0x3000)
+                .putInt(7).putInt(5).putInt(1).putInt(0x10);
+        // section_64
+        buffer.put(name16("__text")).put(name16("__TEXT")).put(new byte[80 - 32]);
+
+        byte[] name = DYLIB_NAME.getBytes(StandardCharsets.US_ASCII);
+        int dylibSize = (24 + name.length + 1 + 7) & ~7;
+        buffer.putInt(MachOConsts.commands.LC_ID_DYLIB).putInt(dylibSize).putInt(24).putInt(2)
+                .putInt(0x4a0102).putInt(0xffff0203).put(name).put(new byte[dylibSize - 24 - name.length]);
+
+        buffer.putInt(MachOConsts.commands.LC_UUID).putInt(24);
+        for (int idx = 0; idx < 16; idx++)
+            buffer.put((byte) (idx + 1));
+
+        buffer.putInt(MachOConsts.commands.LC_SYMTAB).putInt(24).putInt(0x1000).putInt(42).putInt(0x2000).putInt(0x80000000);
+
+        buffer.putInt(MachOConsts.commands.LC_DYLD_INFO_ONLY).putInt(48);
+        for (int idx = 1; idx <= 10; idx++)
+            buffer.putInt(idx);
+
+        buffer.putInt(LC_FUNCTION_STARTS).putInt(16).putInt(0x3000).putInt(8);
+
+        buffer.limit(buffer.position());
+        buffer.position(START);
+        return buffer;
+    }
+
+    private static byte[] name16(String name) {
+        byte[] bytes = new byte[16];
+        byte[] chars = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(chars, 0, bytes, 0, chars.length);
+        return bytes;
+    }
+}